@@ -18,7 +18,9 @@ import rx.Observable;
 import rx.schedulers.Schedulers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -85,6 +87,97 @@ public class WaterfallCacheInlineMemoryTest {
         verifyNoMoreInteractions(cache);
     }
 
+    @Test
+    public void testGetIfPresent() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        assertNull(waterfallCache.getIfPresent(key));
+
+        when(cache.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(waterfallCache.put(key, object), Assert::assertTrue);
+
+        SimpleObject result = waterfallCache.getIfPresent(key);
+        assertEquals(value, result.getValue());
+
+        verify(cache).put(eq(key), eq(object));
+        verifyNoMoreInteractions(cache);
+    }
+
+    @Test
+    public void testGetPromotesToMemory() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+
+        Observable<SimpleObject> getObservable = waterfallCache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(getObservable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        getObservable = waterfallCache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(getObservable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        SimpleObject result = waterfallCache.getIfPresent(key);
+        assertEquals(value, result.getValue());
+
+        verify(cache).get(eq(key), eq(SimpleObject.class));
+        verifyNoMoreInteractions(cache);
+    }
+
+    @Test
+    public void testGetPromotionDisabled() throws Exception {
+        waterfallCache = WaterfallCache.builder()
+                .addMemoryCache(100)
+                .addCache(cache)
+                .withMemoryCachePromotion(false)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+
+        Observable<SimpleObject> getObservable = waterfallCache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(getObservable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        getObservable = waterfallCache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(getObservable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        assertNull(waterfallCache.getIfPresent(key));
+
+        verify(cache, times(2)).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testWeightedMemoryCacheEvictsByWeight() throws Exception {
+        waterfallCache = WaterfallCache.builder()
+                .addWeightedMemoryCache(10, (key, value) -> ((SimpleObject) value).getValue().length())
+                .addCache(cache)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        SimpleObject small = new SimpleObject("SMALL");
+        SimpleObject large = new SimpleObject("LARGE_VALUE");
+
+        when(cache.put(eq("KEY_SMALL"), eq(small))).thenReturn(Observable.just(true));
+        when(cache.put(eq("KEY_LARGE"), eq(large))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(waterfallCache.put("KEY_SMALL", small), Assert::assertTrue);
+        assertEquals(small, waterfallCache.getIfPresent("KEY_SMALL"));
+
+        ObservableTestUtils.testObservable(waterfallCache.put("KEY_LARGE", large), Assert::assertTrue);
+        assertNull(waterfallCache.getIfPresent("KEY_LARGE"));
+        assertEquals(small, waterfallCache.getIfPresent("KEY_SMALL"));
+    }
+
     @Test
     public void testWrapped() throws Exception {
         String key = "TEST_KEY";
@@ -48,6 +48,7 @@ public class WaterfallCacheTest {
         waterfallCache = WaterfallCache.builder()
                 .addDiskCache(context, 1024 * 1024)
                 .addCache(mockCache)
+                .withContainsPrefetch(true)
                 .withObserveOnScheduler(Schedulers.immediate())
                 .build();
     }
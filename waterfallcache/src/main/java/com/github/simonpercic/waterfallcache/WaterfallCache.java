@@ -1,29 +1,70 @@
 package com.github.simonpercic.waterfallcache;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.util.Log;
-import android.util.LruCache;
 
+import com.github.simonpercic.waterfallcache.admission.AdmissionPolicy;
+import com.github.simonpercic.waterfallcache.admission.FrequencyAdmissionPolicy;
+import com.github.simonpercic.waterfallcache.cache.BatchCache;
 import com.github.simonpercic.waterfallcache.cache.BucketCache;
 import com.github.simonpercic.waterfallcache.cache.Cache;
+import com.github.simonpercic.waterfallcache.cache.CacheLoader;
+import com.github.simonpercic.waterfallcache.cache.EnumerableCache;
+import com.github.simonpercic.waterfallcache.cache.MappedLogCache;
+import com.github.simonpercic.waterfallcache.cache.PeekableCache;
 import com.github.simonpercic.waterfallcache.cache.RxCache;
+import com.github.simonpercic.waterfallcache.cache.Trimmable;
 import com.github.simonpercic.waterfallcache.callback.WaterfallCallback;
+import com.github.simonpercic.waterfallcache.callback.WaterfallFailureCallback;
 import com.github.simonpercic.waterfallcache.callback.WaterfallGetCallback;
+import com.github.simonpercic.waterfallcache.callback.WaterfallTimeoutCallback;
+import com.github.simonpercic.waterfallcache.expire.AndroidSystemTimeProvider;
+import com.github.simonpercic.waterfallcache.expire.NegativeCache;
+import com.github.simonpercic.waterfallcache.expire.SimpleTimeProvider;
+import com.github.simonpercic.waterfallcache.filter.BloomFilter;
+import com.github.simonpercic.waterfallcache.health.CircuitBreaker;
+import com.github.simonpercic.waterfallcache.memory.ConcurrentMemoryCache;
+import com.github.simonpercic.waterfallcache.memory.EvictionPolicy;
+import com.github.simonpercic.waterfallcache.memory.MemoryCache;
+import com.github.simonpercic.waterfallcache.memory.ObjectSizeWeigher;
+import com.github.simonpercic.waterfallcache.memory.SoftMemoryCache;
+import com.github.simonpercic.waterfallcache.memory.TieredMemoryCache;
+import com.github.simonpercic.waterfallcache.memory.Weigher;
 import com.github.simonpercic.waterfallcache.utils.AsyncUtils;
+import com.github.simonpercic.waterfallcache.utils.BatchUtils;
 import com.github.simonpercic.waterfallcache.utils.StringUtils;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import rx.Observable;
+import rx.Observable.OnSubscribe;
 import rx.Observable.Transformer;
+import rx.Producer;
 import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
+import rx.exceptions.Exceptions;
+import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.functions.Func2;
 import rx.schedulers.Schedulers;
+import rx.subscriptions.CompositeSubscription;
 
 /**
  * Waterfall cache.
@@ -33,25 +74,138 @@ import rx.schedulers.Schedulers;
  *
  * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
  */
-public final class WaterfallCache implements Cache {
+public final class WaterfallCache implements Cache, PeekableCache, BatchCache {
+
+    // used shares of the max heap size at which the heap watcher trims memory
+    private static final double HEAP_USAGE_MODERATE = 0.75;
+    private static final double HEAP_USAGE_LOW = 0.85;
+    private static final double HEAP_USAGE_CRITICAL = 0.95;
 
     // cache levels
     private final List<RxCache> caches;
 
+    // cache levels that can be read synchronously
+    private final List<PeekableCache> peekableCaches;
+
+    // membership filters of cache levels, null for cache levels without a filter
+    private final List<BloomFilter> filters;
+
+    // whether any cache level has a membership filter
+    private final boolean hasFilters;
+
     // inline memory cache, separate to cache levels for performance's sake
-    private final LruCache<String, Object> memoryCache;
+    private final MemoryCache memoryCache;
+
+    // holds values evicted from the inline memory cache by soft references, null if disabled
+    private final SoftMemoryCache softMemoryCache;
+
+    // keys recently found missing in all cache levels, null if disabled
+    private final NegativeCache negativeCache;
+
+    // whether values obtained from cache levels are written to the inline memory cache
+    private final boolean promoteToMemoryCache;
+
+    // decides which values are promoted to the upper cache levels and written to the inline memory cache, null if all
+    private final AdmissionPolicy admissionPolicy;
+
+    // whether contains prefetches values found in lower cache levels to the upper cache levels
+    private final boolean containsPrefetch;
+
+    // Scheduler to write values back to upper cache levels on, null to write them before emitting the value
+    private final Scheduler backfillScheduler;
+
+    // Scheduler to perform writes to all cache levels in parallel on, null to perform them sequentially
+    private final Scheduler parallelWritesScheduler;
+
+    // Scheduler to start hedged lookups of lower cache levels on, null to look up cache levels strictly one by one
+    private final Scheduler hedgeScheduler;
+
+    // delay after which the lookup of the next cache level is started, while the previous one is still in progress
+    private final long hedgeDelayMillis;
+
+    // max time a read from each cache level may take before it is treated as a miss, 0 if unbounded
+    private final long[] readTimeoutMillis;
+
+    // max time a write to each cache level may take before it is treated as unsuccessful, 0 if unbounded
+    private final long[] writeTimeoutMillis;
+
+    // Scheduler to time cache level reads and writes on
+    private final Scheduler timeoutScheduler;
+
+    // receives cache level timeouts, null to log write timeouts
+    private final WaterfallTimeoutCallback timeoutCallback;
+
+    // circuit breakers of cache levels, null if disabled
+    private final List<CircuitBreaker> breakers;
+
+    // whether reads from cache levels are bounded by a timeout or guarded by a circuit breaker
+    private final boolean guardsReads;
+
+    // receives errors of operations performed in the background
+    private final WaterfallFailureCallback backgroundErrorCallback;
+
+    // trim level last applied by the heap watcher, 0 once heap usage is back to normal
+    private volatile int heapTrimLevel;
+
+    // periodic heap usage check, null if the heap watcher is disabled
+    private final Subscription heapWatcher;
+
+    // loader of values missing in all cache levels, used by get, null if none
+    private final CacheLoader<?> defaultLoader;
+
+    // get lookups currently in progress, by key, shared by all concurrent subscribers of the same key and type
+    private final ConcurrentMap<String, KeyInFlightGets> inFlightGets;
 
     // observe on Scheduler
     private Scheduler observeOnScheduler;
 
-    private WaterfallCache(List<RxCache> caches, Scheduler observeOnScheduler, int inlineMemoryCacheSize) {
-        this.caches = caches;
-        this.observeOnScheduler = observeOnScheduler;
+    private WaterfallCache(Builder builder) {
+        this.caches = builder.caches;
+        this.observeOnScheduler = builder.observeOnScheduler;
+        this.promoteToMemoryCache = builder.promoteToMemoryCache;
+        this.admissionPolicy = builder.admissionPolicy;
+        this.containsPrefetch = builder.containsPrefetch;
+        this.negativeCache = builder.negativeCache;
+        this.backfillScheduler = builder.backfillScheduler;
+        this.backgroundErrorCallback = builder.backgroundErrorCallback;
+        this.defaultLoader = builder.defaultLoader;
+        this.parallelWritesScheduler = builder.parallelWritesScheduler;
+        this.hedgeScheduler = builder.hedgeScheduler;
+        this.hedgeDelayMillis = builder.hedgeDelayMillis;
+        this.readTimeoutMillis = Builder.levelTimeouts(builder.levelReadTimeouts, builder.readTimeoutMillis);
+        this.writeTimeoutMillis = Builder.levelTimeouts(builder.levelWriteTimeouts, builder.writeTimeoutMillis);
+        this.timeoutScheduler = builder.timeoutScheduler;
+        this.timeoutCallback = builder.timeoutCallback;
+        this.breakers = builder.buildBreakers();
+        this.guardsReads = Builder.anyBounded(readTimeoutMillis) || breakers != null;
+        this.inFlightGets = new ConcurrentHashMap<>();
+        this.filters = builder.filters;
+        this.hasFilters = builder.hasFilters;
+
+        this.peekableCaches = new ArrayList<>();
+        for (int i = 0; i < caches.size(); i++) {
+            RxCache cache = caches.get(i);
+
+            if (cache instanceof PeekableCache) {
+                peekableCaches.add((PeekableCache) cache);
+            }
+        }
+
+        this.softMemoryCache = builder.softMemoryOverflow && builder.inlineMemoryCacheSize > 0
+                ? new SoftMemoryCache() : null;
+        this.memoryCache = builder.buildMemoryCache(softMemoryCache);
+
+        // filters report all keys as possibly contained until built, so reads go to the cache levels meanwhile
+        if (hasFilters) {
+            rebuildFilters().subscribeOn(builder.filterRebuildScheduler).subscribe(success -> {
+            }, this::onBackgroundError);
+        }
 
-        if (inlineMemoryCacheSize > 0) {
-            this.memoryCache = new LruCache<>(inlineMemoryCacheSize);
+        if (builder.heapWatchScheduler != null) {
+            this.heapWatcher = Observable.interval(builder.heapWatchPeriodMillis, TimeUnit.MILLISECONDS,
+                    builder.heapWatchScheduler).subscribe(tick -> watchHeap(), this::onBackgroundError);
         } else {
-            this.memoryCache = null;
+            this.heapWatcher = null;
         }
     }
 
@@ -62,8 +216,31 @@ public final class WaterfallCache implements Cache {
      */
     @Override
     public <T> Observable<T> get(final String key, final Type typeOfT) {
+        // the default loader is given the type of value to load
+        @SuppressWarnings("unchecked")
+        CacheLoader<T> loader = (CacheLoader<T>) defaultLoader;
+
+        return get(key, typeOfT, loader);
+    }
+
+    /**
+     * Get from cache, loading the value with the loader if no cache level contains it. The loaded value is written to
+     * all cache levels and the inline memory cache. Concurrent gets of the same key and type share a single load.
+     *
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param loader loader of the value, <tt>null</tt> to only get from cache
+     * @param <T> T of cache value
+     * @return Observable that emits the cache value, or the loaded value
+     */
+    public <T> Observable<T> get(final String key, final Type typeOfT, final CacheLoader<T> loader) {
+        if (admissionPolicy != null) {
+            admissionPolicy.recordAccess(key);
+        }
+
         if (memoryCache != null) {
-            //noinspection unchecked
+            // a key is read with the type of value it was put with
+            @SuppressWarnings("unchecked")
             T memoryValue = (T) memoryCache.get(key);
 
             if (memoryValue != null) {
@@ -71,34 +248,29 @@ public final class WaterfallCache implements Cache {
             }
         }
 
-        return achieveOnce(null, cache -> cache.<T>get(key, typeOfT), value -> value != null)
-                .flatMap(resultWrapper -> {
-                    if (resultWrapper.result != null && resultWrapper.hitCacheIdx > 0) {
-                        Observable<Boolean> observable = Observable.just(false);
-
-                        for (int i = 0; i < resultWrapper.hitCacheIdx; i++) {
-                            RxCache cache = caches.get(i);
-
-                            observable = observable.flatMap(success -> cache.put(key, resultWrapper.result));
-                        }
-
-                        return observable.map(success -> resultWrapper.result);
-                    }
+        if (loader == null && negativeCache != null && negativeCache.isKnownMissing(key)) {
+            return Observable.<T>just(null).compose(applySchedulers());
+        }
 
-                    return Observable.just(resultWrapper.result);
-                });
+        return Observable.defer(() -> sharedGet(key, typeOfT, loader)).compose(applySchedulers());
     }
 
     /**
      * {@inheritDoc}
+     * Emits <tt>true</tt> only if the operation succeeded on all cache levels, whether they are written sequentially or
+     * in parallel.
      */
     @Override
     public Observable<Boolean> put(final String key, final Object object) {
-        if (memoryCache != null) {
-            memoryCache.put(key, object);
+        putToMemoryCache(key, object);
+
+        if (negativeCache != null) {
+            negativeCache.invalidate(key);
         }
 
-        return doOnAll(cache -> cache.put(key, object));
+        cancelInFlightGets(key);
+
+        return doOnAll(index -> putToLevel(index, key, object));
     }
 
     /**
@@ -114,10 +286,31 @@ public final class WaterfallCache implements Cache {
             }
         }
 
-        return achieveOnce(false, cache -> cache.contains(key), value -> value)
+        if (negativeCache != null && negativeCache.isKnownMissing(key)) {
+            return Observable.just(false).compose(applySchedulers());
+        }
+
+        return Observable.defer(() -> lookupContains(key)).compose(applySchedulers());
+    }
+
+    /**
+     * Checks the cache levels for the key. Answers from the cache levels' contains only, unless contains prefetch is
+     * enabled, in which case the value is prefetched to the upper cache levels if a lower level contains it.
+     *
+     * @param key key
+     * @return Observable that emits <tt>true</tt> if any cache level contains the key
+     */
+    private Observable<Boolean> lookupContains(String key) {
+        long negativeCacheEpoch = negativeCache != null ? negativeCache.epoch() : 0;
+
+        return achieveOnce(key, false, cache -> cache.contains(key), value -> value)
                 .flatMap(resultWrapper -> {
-                    if (resultWrapper.result && resultWrapper.hitCacheIdx > 0) {
-                        return get(key, Object.class).map(o -> true);
+                    if (!resultWrapper.result && negativeCache != null) {
+                        negativeCache.recordMiss(key, negativeCacheEpoch);
+                    }
+
+                    if (containsPrefetch && resultWrapper.result && resultWrapper.hitCacheIdx > 0) {
+                        return sharedGet(key, Object.class, null).map(o -> true);
                     }
 
                     return Observable.just(resultWrapper.result);
@@ -126,6 +319,8 @@ public final class WaterfallCache implements Cache {
 
     /**
      * {@inheritDoc}
+     * Emits <tt>true</tt> only if the operation succeeded on all cache levels, whether they are written sequentially or
+     * in parallel.
      */
     @Override
     public Observable<Boolean> remove(final String key) {
@@ -133,220 +328,1444 @@ public final class WaterfallCache implements Cache {
             memoryCache.remove(key);
         }
 
-        return doOnAll(cache -> cache.remove(key));
+        cancelInFlightGets(key);
+
+        return doOnAll(index -> guardWrite(index, () -> caches.get(index).remove(key)));
     }
 
     /**
      * {@inheritDoc}
+     * Emits <tt>true</tt> only if the operation succeeded on all cache levels, whether they are written sequentially or
+     * in parallel.
      */
     @Override
     public Observable<Boolean> clear() {
         if (memoryCache != null) {
-            memoryCache.evictAll();
+            memoryCache.clear();
+        }
+
+        if (negativeCache != null) {
+            negativeCache.invalidateAll();
+        }
+
+        for (String key : inFlightGets.keySet()) {
+            cancelInFlightGets(key);
+        }
+
+        // clear filters before clearing the levels, so that no concurrent put is left out of a filter
+        if (hasFilters) {
+            for (int i = 0; i < filters.size(); i++) {
+                BloomFilter filter = filters.get(i);
+
+                if (filter != null) {
+                    filter.clear();
+                }
+            }
         }
 
-        return doOnAll(RxCache::clear);
+        return doOnAll(index -> guardWrite(index, () -> caches.get(index).clear()));
     }
 
     // endregion Cache methods
 
+    // region batch methods
+
     /**
-     * Performs a cache function on all cache levels sequentially.
+     * Get many values.
+     * Checks the inline memory cache first, then sends only the keys that are still missing to each cache level in
+     * turn, as one batch per level. Values obtained from a cache level are written back to the upper cache levels in
+     * bulk.
      *
-     * @param cacheFn cache function to perform on all cache levels
-     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param <T> T of cache values
+     * @return Observable that emits the values found, mapped by their keys; keys not found are left out
      */
-    private Observable<Boolean> doOnAll(Func1<RxCache, Observable<Boolean>> cacheFn) {
-        Observable<Boolean> observable = Observable.just(true);
+    @Override
+    public <T> Observable<Map<String, T>> getAll(final List<String> keys, final Type typeOfT) {
+        return Observable.defer(() -> this.<T>lookupAll(keys, typeOfT)).compose(applySchedulers());
+    }
 
-        for (int i = 0; i < caches.size(); i++) {
-            RxCache cache = caches.get(i);
+    /**
+     * Put many values to all cache levels, as one batch per level.
+     *
+     * @param values values, mapped by their keys
+     * @return Observable that emits <tt>true</tt> if successful on all cache levels, <tt>false</tt> otherwise
+     */
+    @Override
+    public Observable<Boolean> putAll(final Map<String, ?> values) {
+        for (Entry<String, ?> entry : values.entrySet()) {
+            String key = entry.getKey();
+
+            putToMemoryCache(key, entry.getValue());
+
+            if (negativeCache != null) {
+                negativeCache.invalidate(key);
+            }
 
-            observable = observable.flatMap(success -> cacheFn.call(cache));
+            cancelInFlightGets(key);
         }
 
-        return observable.compose(applySchedulers());
+        return doOnAll(index -> putAllToLevel(index, values));
     }
 
     /**
-     * Performs a cache function on each cache level sequentially, until one cache level fulfills the predicate.
+     * Remove many values from all cache levels, as one batch per level.
      *
-     * @param defaultValue default value to emit if unsuccessful
-     * @param cacheFn cache function to perform
-     * @param condition predicate condition
-     * @param <T> type of value
-     * @return Observable that emits the value
+     * @param keys keys
+     * @return Observable that emits <tt>true</tt> if successful on all cache levels, <tt>false</tt> otherwise
      */
-    private <T> Observable<ResultWrapper<T>> achieveOnce(
-            T defaultValue,
-            Func1<RxCache, Observable<T>> cacheFn,
-            Predicate<T> condition) {
+    @Override
+    public Observable<Boolean> removeAll(final List<String> keys) {
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
 
-        Observable<T> observable = Observable.just(defaultValue);
+            if (memoryCache != null) {
+                memoryCache.remove(key);
+            }
+
+            cancelInFlightGets(key);
+        }
+
+        return doOnAll(index -> guardWrite(index, () -> BatchUtils.removeAll(caches.get(index), keys)));
+    }
+
+    /**
+     * Gets many values, walking through the cache levels with the keys that are still missing.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param <T> T of cache values
+     * @return Observable that emits the values found, mapped by their keys
+     */
+    private <T> Observable<Map<String, T>> lookupAll(List<String> keys, Type typeOfT) {
+        Map<String, T> found = new HashMap<>();
+
+        // a key asked for more than once is looked up, and tracked as in flight, once
+        Set<String> missingKeys = new LinkedHashSet<>(keys.size());
+
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+
+            if (admissionPolicy != null) {
+                admissionPolicy.recordAccess(key);
+            }
+
+            if (memoryCache != null) {
+                // a key is read with the type of value it was put with
+                @SuppressWarnings("unchecked")
+                T memoryValue = (T) memoryCache.get(key);
+
+                if (memoryValue != null) {
+                    found.put(key, memoryValue);
+                    continue;
+                }
+            }
 
-        AtomicInteger hitIndex = new AtomicInteger();
+            if (negativeCache == null || !negativeCache.isKnownMissing(key)) {
+                missingKeys.add(key);
+            }
+        }
+
+        if (missingKeys.isEmpty()) {
+            return Observable.just(found);
+        }
+
+        List<String> missing = new ArrayList<>(missingKeys);
+
+        long negativeCacheEpoch = negativeCache != null ? negativeCache.epoch() : 0;
+
+        // register the lookups of the missing keys, so that a put or remove of a key in the meantime detaches it
+        Map<String, InFlightGet> batchGets = new HashMap<>(missing.size());
+
+        for (int i = 0; i < missing.size(); i++) {
+            InFlightGet batchGet = new InFlightGet(missing.get(i), typeOfT, false);
+            registerInFlightGet(batchGet);
+            batchGets.put(batchGet.key, batchGet);
+        }
+
+        Observable<List<String>> observable = Observable.just(missing);
 
         for (int i = 0; i < caches.size(); i++) {
-            RxCache cache = caches.get(i);
+            int index = i;
 
-            if (i == 0) {
-                observable = observable.flatMap(s -> cacheFn.call(cache));
-            } else {
-                observable = observable.flatMap(value -> {
-                    if (condition.apply(value)) {
-                        return Observable.just(value).subscribeOn(Schedulers.immediate());
-                    } else {
-                        hitIndex.incrementAndGet();
-                        return cacheFn.call(cache);
+            observable = observable.flatMap(remaining -> {
+                List<String> levelKeys = hasFilters ? unfilteredKeys(index, remaining) : remaining;
+
+                if (levelKeys.isEmpty()) {
+                    return Observable.just(remaining);
+                }
+
+                Observable<Map<String, T>> levelGetAll;
+
+                if (guardsReads) {
+                    levelGetAll = guardRead(index, levelKeys, () -> BatchUtils.getAll(caches.get(index), levelKeys,
+                            typeOfT), Collections.<String, T>emptyMap());
+                } else {
+                    levelGetAll = BatchUtils.getAll(caches.get(index), levelKeys, typeOfT);
+                }
+
+                return levelGetAll.flatMap(values -> {
+                    if (values.isEmpty()) {
+                        return Observable.just(remaining);
                     }
+
+                    found.putAll(values);
+
+                    List<String> stillMissing = new ArrayList<>(remaining.size());
+                    Map<String, T> admitted = new HashMap<>(values.size());
+
+                    for (int j = 0; j < remaining.size(); j++) {
+                        String key = remaining.get(j);
+                        T value = values.get(key);
+
+                        if (value == null) {
+                            stillMissing.add(key);
+                        } else if (!batchGets.get(key).detached && isAdmitted(key)) {
+                            promoteToMemoryCache(key, value, typeOfT);
+                            admitted.put(key, value);
+                        }
+                    }
+
+                    if (index > 0 && !admitted.isEmpty()) {
+                        return emitAfterBackfill(backfillAll(admitted, index), stillMissing);
+                    }
+
+                    return Observable.just(stillMissing);
                 });
-            }
+            });
         }
 
-        return observable
-                .map(t -> new ResultWrapper<>(t, hitIndex.get()))
-                .compose(applySchedulers());
-    }
+        return observable.map(remaining -> {
+            if (negativeCache != null) {
+                for (int i = 0; i < remaining.size(); i++) {
+                    negativeCache.recordMiss(remaining.get(i), negativeCacheEpoch);
+                }
+            }
 
-    // region asynchronous methods
+            return found;
+        })
+                .doOnTerminate(() -> unregisterInFlightGets(batchGets))
+                .doOnUnsubscribe(() -> unregisterInFlightGets(batchGets));
+    }
 
     /**
-     * {@inheritDoc}
+     * Writes the values to all cache levels above the level they were obtained from, sequentially, as one batch per
+     * level.
+     *
+     * @param values values, mapped by their keys
+     * @param hitCacheIdx index of the cache level the values were obtained from
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
      */
-    @Override
-    public <T> void getAsync(String key, Type typeOfT, WaterfallGetCallback<T> callback) {
-        checkGetArgs(key, typeOfT);
-
-        Observable<T> get = get(key, typeOfT);
-        AsyncUtils.doAsync(get, callback);
+    private Observable<Boolean> backfillAll(Map<String, ?> values, int hitCacheIdx) {
+        return writeSequentially(hitCacheIdx, false, index -> putAllToLevel(index, values));
     }
 
     /**
-     * {@inheritDoc}
+     * Puts the values to a cache level, adding the keys to the level's membership filter once written.
+     *
+     * @param index index of the cache level
+     * @param values values, mapped by their keys
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
      */
-    @Override
-    public void putAsync(String key, Object object, WaterfallCallback callback) {
-        checkPutArgs(key, object);
+    private Observable<Boolean> putAllToLevel(int index, Map<String, ?> values) {
+        Observable<Boolean> putAll = guardWrite(index, () -> BatchUtils.putAll(caches.get(index), values));
 
-        AsyncUtils.doAsync(put(key, object), callback);
-    }
+        BloomFilter filter = hasFilters ? filters.get(index) : null;
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void containsAsync(String key, WaterfallGetCallback<Boolean> callback) {
-        checkKeyArg(key);
+        if (filter != null) {
+            return putAll.doOnNext(success -> {
+                for (String key : values.keySet()) {
+                    filter.put(key);
+                }
+            });
+        }
 
-        AsyncUtils.doAsync(contains(key), callback);
+        return putAll;
     }
 
+    // endregion batch methods
+
     /**
-     * {@inheritDoc}
+     * Get from the memory resident caches, synchronously.
+     * Checks the inline memory cache and then all cache levels that implement {@link PeekableCache}, does not touch
+     * the other cache levels, does not allocate an Observable and does not switch threads.
+     *
+     * @param key key
+     * @param <T> T of cache value
+     * @return cache value or <tt>null</tt> if no memory resident cache contains it
      */
     @Override
-    public void removeAsync(String key, WaterfallCallback callback) {
-        checkKeyArg(key);
+    public <T> T getIfPresent(String key) {
+        if (memoryCache != null) {
+            // a key is read with the type of value it was put with
+            @SuppressWarnings("unchecked")
+            T memoryValue = (T) memoryCache.get(key);
 
-        AsyncUtils.doAsync(remove(key), callback);
-    }
+            if (memoryValue != null) {
+                return memoryValue;
+            }
+        }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void clearAsync(WaterfallCallback callback) {
-        AsyncUtils.doAsync(clear(), callback);
-    }
+        for (int i = 0; i < peekableCaches.size(); i++) {
+            T value = peekableCaches.get(i).getIfPresent(key);
 
-    // endregion asynchronous methods
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return null;
+    }
 
     /**
-     * Sets a scheduler to observe on.
+     * Returns the in-flight lookup for the given key and type, starting a new one if there is none.
+     * Concurrent subscribers share a single walk through the cache levels, a single load and a single write-back to the
+     * cache levels, subscribers arriving late are replayed the pending result. Gets with and without a loader do not
+     * share lookups. The lookup unregisters itself once it terminates.
      *
-     * @param scheduler Scheduler
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param loader loader of the value, <tt>null</tt> to only get from cache
+     * @param <T> T of cache value
+     * @return shared Observable that emits the cache value
      */
-    public void setObserveOnScheduler(Scheduler scheduler) {
-        if (scheduler != null) {
-            observeOnScheduler = scheduler;
-        }
-    }
-
-    @SuppressWarnings("RedundantCast")
-    private final Transformer schedulersTransformer = observable -> ((Observable) observable).observeOn(
-            observeOnScheduler);
+    private <T> Observable<T> sharedGet(String key, Type typeOfT, CacheLoader<T> loader) {
+        InFlightGet inFlightGet = new InFlightGet(key, typeOfT, loader != null);
 
-    private <T> Transformer<T, T> applySchedulers() {
-        //noinspection unchecked
-        return (Transformer<T, T>) schedulersTransformer;
-    }
+        InFlightGet existing = findInFlightGet(inFlightGet);
 
-    private interface Predicate<T> {
-        boolean apply(T value);
-    }
+        if (existing == null) {
+            inFlightGet.observable = this.<T>lookup(key, typeOfT, loader, inFlightGet)
+                    .doOnTerminate(() -> unregisterInFlightGet(inFlightGet))
+                    .cache();
 
-    private static class ResultWrapper<T> {
-        private final T result;
-        private final int hitCacheIdx;
+            existing = registerInFlightGet(inFlightGet);
 
-        public ResultWrapper(T result, int hitCacheIdx) {
-            this.result = result;
-            this.hitCacheIdx = hitCacheIdx;
+            if (existing == null) {
+                existing = inFlightGet;
+            }
         }
-    }
-
-    // region args checks
 
-    private static void checkGetArgs(String key, Type typeOfT) {
-        checkStringArgumentEmpty(key, "key");
-        checkObjectArgumentNull(typeOfT, "typeOfT");
-    }
+        // in-flight gets are only shared between gets of the same type
+        @SuppressWarnings("unchecked")
+        Observable<T> observable = (Observable<T>) existing.observable;
 
-    private static void checkPutArgs(String key, Object object) {
-        checkStringArgumentEmpty(key, "key");
-        checkObjectArgumentNull(object, "object");
+        return observable;
     }
 
-    private static void checkKeyArg(String key) {
-        checkStringArgumentEmpty(key, "key");
-    }
+    /**
+     * Finds the in-flight get of the same key, type and loading as the given one.
+     *
+     * @param inFlightGet in-flight get to find a match of
+     * @return matching in-flight get, <tt>null</tt> if there is none
+     */
+    private InFlightGet findInFlightGet(InFlightGet inFlightGet) {
+        KeyInFlightGets keyGets = inFlightGets.get(inFlightGet.key);
 
-    private static void checkStringArgumentEmpty(String value, String name) {
-        if (StringUtils.isEmpty(value)) {
-            throw new IllegalArgumentException(String.format("%s is null or empty", name));
+        if (keyGets == null) {
+            return null;
         }
-    }
 
-    private static void checkObjectArgumentNull(Object value, String name) {
-        if (value == null) {
-            throw new IllegalArgumentException(String.format("%s is null", name));
+        synchronized (keyGets) {
+            return keyGets.find(inFlightGet);
         }
     }
 
-    // endregion args checks
-
-    // region Builder
-
     /**
-     * Creates a new cache builder.
+     * Registers the in-flight get under its key, unless a matching one got registered in the meantime.
      *
-     * @return cache builder
+     * @param inFlightGet in-flight get to register
+     * @return matching in-flight get that is already registered, <tt>null</tt> if the given one was registered
      */
-    public static Builder builder() {
-        return new Builder();
-    }
+    private InFlightGet registerInFlightGet(InFlightGet inFlightGet) {
+        // gets without an observable, of batch lookups, are only registered to be detached, not to be shared
+        while (true) {
+            KeyInFlightGets keyGets = inFlightGets.get(inFlightGet.key);
 
-    /**
-     * Cache builder.
-     */
-    public static final class Builder {
+            if (keyGets == null) {
+                keyGets = new KeyInFlightGets();
 
-        private final List<RxCache> caches;
-        private int inlineMemoryCacheSize;
-        private Scheduler observeOnScheduler;
+                KeyInFlightGets current = inFlightGets.putIfAbsent(inFlightGet.key, keyGets);
 
-        private Builder() {
+                if (current != null) {
+                    keyGets = current;
+                }
+            }
+
+            synchronized (keyGets) {
+                // a closed instance was detached from the map, register with its replacement
+                if (!keyGets.closed) {
+                    InFlightGet existing = inFlightGet.observable != null ? keyGets.find(inFlightGet) : null;
+
+                    if (existing == null) {
+                        keyGets.gets.add(inFlightGet);
+                        inFlightGet.keyGets = keyGets;
+                    }
+
+                    return existing;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unregisters a terminated in-flight get, removing the in-flight gets of its key from the map once none is left.
+     *
+     * @param inFlightGet in-flight get
+     */
+    private void unregisterInFlightGet(InFlightGet inFlightGet) {
+        KeyInFlightGets keyGets = inFlightGet.keyGets;
+
+        synchronized (keyGets) {
+            keyGets.gets.remove(inFlightGet);
+
+            if (keyGets.gets.isEmpty() && !keyGets.closed) {
+                keyGets.closed = true;
+                inFlightGets.remove(inFlightGet.key, keyGets);
+            }
+        }
+    }
+
+    /**
+     * Gets the value from the first cache level that contains it and writes it to all the cache levels above it.
+     * Typed values are also written to the inline memory cache, unless disabled by
+     * {@link Builder#withMemoryCachePromotion(boolean)}. Untyped values (read as <tt>Object</tt>, as done by
+     * {@link #contains(String)}) are not, since they might not be instances of the type a following get expects;
+     * those reach the memory cache on the next typed get, which is then served by the upper cache level.
+     * Values the admission policy does not admit are emitted without writing them anywhere, as are values of lookups
+     * detached by a put or remove of the key while in progress, so that they do not overwrite the newer value.
+     * If no cache level contains the value, it is loaded with the loader, if given.
+     *
+     * @param key key
+     * @param typeOfT type of cache value
+     * @param loader loader of the value, <tt>null</tt> to only get from cache
+     * @param inFlightGet in-flight get this lookup is shared by
+     * @param <T> T of cache value
+     * @return Observable that emits the cache value
+     */
+    private <T> Observable<T> lookup(String key, Type typeOfT, CacheLoader<T> loader, InFlightGet inFlightGet) {
+        long negativeCacheEpoch = negativeCache != null ? negativeCache.epoch() : 0;
+
+        if (loader != null && negativeCache != null && negativeCache.isKnownMissing(key)) {
+            return load(key, typeOfT, loader, inFlightGet, negativeCacheEpoch);
+        }
+
+        return achieveOnce(key, null, cache -> cache.<T>get(key, typeOfT), value -> value != null)
+                .flatMap(resultWrapper -> {
+                    if (resultWrapper.result == null && loader != null) {
+                        return load(key, typeOfT, loader, inFlightGet, negativeCacheEpoch);
+                    }
+
+                    if (resultWrapper.result == null && negativeCache != null) {
+                        negativeCache.recordMiss(key, negativeCacheEpoch);
+                    }
+
+                    // a put or remove of the key since the lookup started wrote a newer value, keep it
+                    if (resultWrapper.result == null || inFlightGet.detached || !isAdmitted(key)) {
+                        return Observable.just(resultWrapper.result);
+                    }
+
+                    promoteToMemoryCache(key, resultWrapper.result, typeOfT);
+
+                    if (resultWrapper.hitCacheIdx > 0) {
+                        Observable<Boolean> backfill = backfill(key, resultWrapper.result, resultWrapper.hitCacheIdx);
+                        return emitAfterBackfill(backfill, resultWrapper.result);
+                    }
+
+                    return Observable.just(resultWrapper.result);
+                });
+    }
+
+    /**
+     * Loads the value with the loader and writes it to all cache levels and the inline memory cache. The value is not
+     * written if a put or remove of the key detached the get while loading, so that it does not overwrite a newer
+     * value.
+     *
+     * @param key key
+     * @param typeOfT type of value
+     * @param loader loader of the value
+     * @param inFlightGet in-flight get the load is shared by
+     * @param negativeCacheEpoch negative cache epoch at the start of the lookup
+     * @param <T> T of value
+     * @return Observable that emits the loaded value
+     */
+    private <T> Observable<T> load(String key, Type typeOfT, CacheLoader<T> loader, InFlightGet inFlightGet,
+            long negativeCacheEpoch) {
+
+        return loader.load(key, typeOfT).lastOrDefault(null).flatMap(value -> {
+            if (value == null) {
+                if (negativeCache != null) {
+                    negativeCache.recordMiss(key, negativeCacheEpoch);
+                }
+
+                return Observable.just(null);
+            }
+
+            if (inFlightGet.detached) {
+                return Observable.just(value);
+            }
+
+            putToMemoryCache(key, value);
+
+            if (negativeCache != null) {
+                negativeCache.invalidate(key);
+            }
+
+            return emitAfterBackfill(writeToAll(index -> putToLevel(index, key, value)), value);
+        });
+    }
+
+    /**
+     * Writes a put or loaded value to the inline memory cache, if admitted. A value that is not admitted removes the
+     * previous value of the key from the inline memory cache instead, so that it is not served anymore.
+     *
+     * @param key key
+     * @param value value
+     */
+    private void putToMemoryCache(String key, Object value) {
+        if (memoryCache == null) {
+            return;
+        }
+
+        if (isAdmitted(key)) {
+            memoryCache.put(key, value);
+        } else {
+            memoryCache.remove(key);
+        }
+    }
+
+    /**
+     * Whether the admission policy, if any, admits the value of the key to the upper cache levels.
+     *
+     * @param key key
+     * @return <tt>true</tt> if admitted
+     */
+    private boolean isAdmitted(String key) {
+        return admissionPolicy == null || admissionPolicy.admit(key);
+    }
+
+    /**
+     * Writes a typed value obtained from a cache level to the inline memory cache, if enabled.
+     *
+     * @param key key
+     * @param value value
+     * @param typeOfT type the value was obtained as
+     */
+    private void promoteToMemoryCache(String key, Object value, Type typeOfT) {
+        if (memoryCache != null && promoteToMemoryCache && typeOfT != Object.class) {
+            memoryCache.put(key, value);
+        }
+    }
+
+    /**
+     * Emits the result once the backfill completes, or right away while the backfill runs in the background, if
+     * enabled by {@link Builder#withAsyncBackfill(Scheduler)}.
+     *
+     * @param backfill backfill
+     * @param result result
+     * @param <T> type of result
+     * @return Observable that emits the result
+     */
+    private <T> Observable<T> emitAfterBackfill(Observable<Boolean> backfill, T result) {
+        if (backfillScheduler != null) {
+            backfill.subscribeOn(backfillScheduler).subscribe(success -> {
+            }, this::onBackgroundError);
+
+            return Observable.just(result);
+        }
+
+        return backfill.map(success -> result);
+    }
+
+    /**
+     * Writes the value to all cache levels above the level it was obtained from, sequentially.
+     *
+     * @param key key
+     * @param value value
+     * @param hitCacheIdx index of the cache level the value was obtained from
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    private Observable<Boolean> backfill(String key, Object value, int hitCacheIdx) {
+        return writeSequentially(hitCacheIdx, false, index -> putToLevel(index, key, value));
+    }
+
+    /**
+     * Puts the value to a cache level, adding the key to the level's membership filter once written.
+     *
+     * @param index index of the cache level
+     * @param key key
+     * @param value value
+     * @return Observable that emits <tt>true</tt> if successful, <tt>false</tt> otherwise
+     */
+    private Observable<Boolean> putToLevel(int index, String key, Object value) {
+        Observable<Boolean> put = guardWrite(index, () -> caches.get(index).put(key, value));
+
+        BloomFilter filter = hasFilters ? filters.get(index) : null;
+
+        if (filter != null) {
+            return put.doOnNext(success -> filter.put(key));
+        }
+
+        return put;
+    }
+
+    /**
+     * Whether the membership filter of a cache level rules out that the level contains the key.
+     *
+     * @param index index of the cache level
+     * @param key key
+     * @return <tt>true</tt> if the cache level definitely does not contain the key
+     */
+    private boolean isFilteredOut(int index, String key) {
+        if (!hasFilters) {
+            return false;
+        }
+
+        BloomFilter filter = filters.get(index);
+        return filter != null && !filter.mightContain(key);
+    }
+
+    /**
+     * Returns the keys that the membership filter of a cache level does not rule out.
+     *
+     * @param index index of the cache level
+     * @param keys keys
+     * @return keys the cache level might contain
+     */
+    private List<String> unfilteredKeys(int index, List<String> keys) {
+        List<String> unfiltered = new ArrayList<>(keys.size());
+
+        for (int i = 0; i < keys.size(); i++) {
+            if (!isFilteredOut(index, keys.get(i))) {
+                unfiltered.add(keys.get(i));
+            }
+        }
+
+        return unfiltered;
+    }
+
+    /**
+     * Reads from a cache level, bounded by the read timeout and guarded by the cache level's circuit breaker. A read
+     * that times out, a read bypassed by an open circuit and, with circuit breakers enabled, a read that fails all
+     * emit the default value, as if the cache level missed. The misses of the keys are then not remembered by the
+     * negative cache, since the cache level might still contain them.
+     *
+     * @param index index of the cache level
+     * @param keys keys read
+     * @param readFn function that returns the read from the cache level
+     * @param defaultValue value to emit if the read is bypassed, times out or fails
+     * @param <T> type of value
+     * @return Observable that emits the read value, or the default value
+     */
+    private <T> Observable<T> guardRead(int index, List<String> keys, Func0<Observable<T>> readFn, T defaultValue) {
+        return guardLevel(index, keys, readFn, defaultValue, readTimeoutMillis[index], false);
+    }
+
+    /**
+     * Writes to a cache level, bounded by the write timeout and guarded by the cache level's circuit breaker, if set.
+     * A write that times out, a write bypassed by an open circuit and, with circuit breakers enabled, a write that
+     * fails all emit <tt>false</tt>.
+     *
+     * @param index index of the cache level
+     * @param writeFn function that returns the write to the cache level
+     * @return Observable that emits the result of the write, or <tt>false</tt>
+     */
+    private Observable<Boolean> guardWrite(int index, Func0<Observable<Boolean>> writeFn) {
+        if (writeTimeoutMillis[index] <= 0 && breakers == null) {
+            return writeFn.call();
+        }
+
+        return guardLevel(index, Collections.<String>emptyList(), writeFn, false, writeTimeoutMillis[index], true);
+    }
+
+    /**
+     * Performs an operation on a cache level, see {@link #guardRead(int, List, Func0, Object)} and
+     * {@link #guardWrite(int, Func0)}. Timeouts are reported to the timeout callback, errors swallowed by the circuit
+     * breaker to the background error callback.
+     *
+     * @param index index of the cache level
+     * @param keys keys whose misses must not be remembered if the operation does not complete
+     * @param operationFn function that returns the operation on the cache level
+     * @param fallbackValue value to emit if the operation is bypassed, times out or fails
+     * @param timeoutMillis timeout of the operation, 0 if unbounded
+     * @param write whether the operation is a write
+     * @param <T> type of value
+     * @return Observable that emits the result of the operation, or the fallback value
+     */
+    private <T> Observable<T> guardLevel(int index, List<String> keys, Func0<Observable<T>> operationFn,
+            T fallbackValue, long timeoutMillis, boolean write) {
+
+        CircuitBreaker breaker = breakers != null ? breakers.get(index) : null;
+
+        // the circuit is acquired on subscription, together with monitoring the operation, so that an operation that
+        // is never subscribed to, e.g. one still waiting for the parallel writes scheduler, does not hold the probe
+        Observable<T> operation = Observable.defer(() -> {
+            if (breaker != null && !breaker.tryAcquire()) {
+                forgetMisses(keys);
+                return Observable.just(fallbackValue);
+            }
+
+            Observable<T> levelOperation;
+
+            try {
+                levelOperation = operationFn.call();
+            } catch (Throwable throwable) {
+                Exceptions.throwIfFatal(throwable);
+                levelOperation = Observable.error(throwable);
+            }
+
+            if (timeoutMillis > 0) {
+                levelOperation = levelOperation.timeout(timeoutMillis, TimeUnit.MILLISECONDS, timeoutScheduler);
+            }
+
+            if (breaker != null) {
+                levelOperation = levelOperation.lift(breaker.<T>monitor());
+            }
+
+            return levelOperation;
+        });
+
+        return operation.onErrorResumeNext(throwable -> {
+            if (timeoutMillis > 0 && throwable instanceof TimeoutException) {
+                onLevelTimeout(index, write);
+            } else if (breaker != null) {
+                onBackgroundError(throwable);
+            } else {
+                return Observable.error(throwable);
+            }
+
+            forgetMisses(keys);
+            return Observable.just(fallbackValue);
+        });
+    }
+
+    /**
+     * Reports a cache level timeout to the timeout callback, write timeouts are logged if there is none.
+     *
+     * @param index index of the cache level
+     * @param write whether the timed out operation is a write
+     */
+    private void onLevelTimeout(int index, boolean write) {
+        if (timeoutCallback != null) {
+            if (write) {
+                timeoutCallback.onWriteTimeout(index);
+            } else {
+                timeoutCallback.onReadTimeout(index);
+            }
+        } else if (write) {
+            Log.w(WaterfallCache.class.getSimpleName(), String.format("Write to cache level %d timed out", index));
+        }
+    }
+
+    /**
+     * Makes the negative cache forget the misses of the keys and ignore misses of lookups in progress.
+     *
+     * @param keys keys
+     */
+    private void forgetMisses(List<String> keys) {
+        if (negativeCache != null) {
+            for (int i = 0; i < keys.size(); i++) {
+                negativeCache.invalidate(keys.get(i));
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the membership filters of all filtered cache levels from the keys the levels hold.
+     * Done automatically in the background when the cache is built, see
+     * {@link Builder#withFilterRebuildScheduler(Scheduler)}. Since keys can not be removed from a filter, rebuilding
+     * from time to time keeps removed keys from raising the false positive rate.
+     *
+     * @return Observable that emits <tt>true</tt> when all filters are rebuilt
+     */
+    public Observable<Boolean> rebuildFilters() {
+        Observable<Boolean> observable = Observable.just(true);
+
+        for (int i = 0; i < filters.size(); i++) {
+            BloomFilter filter = filters.get(i);
+
+            if (filter == null) {
+                continue;
+            }
+
+            EnumerableCache cache = (EnumerableCache) caches.get(i);
+
+            Observable<Boolean> rebuild = Observable.defer(() -> {
+                filter.beginRebuild();
+                return cache.keys();
+            }).doOnError(throwable -> filter.abortRebuild()).map(keys -> {
+                filter.finishRebuild(keys);
+                return true;
+            });
+
+            observable = observable.flatMap(success -> rebuild);
+        }
+
+        return observable;
+    }
+
+    /**
+     * Reports an error of an operation that was performed in the background, on behalf of no particular caller.
+     *
+     * @param throwable error
+     */
+    private void onBackgroundError(Throwable throwable) {
+        if (backgroundErrorCallback != null) {
+            backgroundErrorCallback.onFailure(throwable);
+        } else {
+            Log.w(WaterfallCache.class.getSimpleName(), "Background operation failed", throwable);
+        }
+    }
+
+    /**
+     * Unregisters the in-flight gets of a terminated or unsubscribed batch lookup.
+     *
+     * @param batchGets in-flight gets, by key
+     */
+    private void unregisterInFlightGets(Map<String, InFlightGet> batchGets) {
+        for (InFlightGet batchGet : batchGets.values()) {
+            unregisterInFlightGet(batchGet);
+        }
+    }
+
+    /**
+     * Detaches in-flight lookups of the given key, so that following gets don't join a lookup that started before
+     * the value was modified.
+     *
+     * @param key key
+     */
+    private void cancelInFlightGets(String key) {
+        if (inFlightGets.isEmpty()) {
+            return;
+        }
+
+        KeyInFlightGets keyGets = inFlightGets.remove(key);
+
+        if (keyGets == null) {
+            return;
+        }
+
+        synchronized (keyGets) {
+            keyGets.closed = true;
+
+            for (int i = 0; i < keyGets.gets.size(); i++) {
+                keyGets.gets.get(i).detached = true;
+            }
+
+            keyGets.gets.clear();
+        }
+    }
+
+    /**
+     * Performs a cache function on all cache levels, sequentially or in parallel, as set by
+     * {@link Builder#withParallelWrites(Scheduler)}.
+     *
+     * @param levelFn function that performs the operation on the cache level at the given index
+     * @return Observable that emits <tt>true</tt> if successful on all cache levels, <tt>false</tt> otherwise
+     */
+    private Observable<Boolean> doOnAll(Func1<Integer, Observable<Boolean>> levelFn) {
+        return writeToAll(levelFn).compose(applySchedulers());
+    }
+
+    /**
+     * Performs a cache function on all cache levels, like {@link #doOnAll(Func1)}, without applying the observe on
+     * scheduler.
+     *
+     * @param levelFn function that performs the operation on the cache level at the given index
+     * @return Observable that emits <tt>true</tt> if successful on all cache levels, <tt>false</tt> otherwise
+     */
+    private Observable<Boolean> writeToAll(Func1<Integer, Observable<Boolean>> levelFn) {
+        if (parallelWritesScheduler != null) {
+            return Observable.range(0, caches.size())
+                    .flatMap(index -> levelFn.call(index).subscribeOn(parallelWritesScheduler))
+                    .reduce(true, WaterfallCache::allSucceeded);
+        }
+
+        return writeSequentially(caches.size(), true, levelFn);
+    }
+
+    /**
+     * Performs a cache function on each cache level sequentially, until one cache level fulfills the predicate.
+     * With hedged reads enabled, lookups of lower cache levels may already be in progress or done by the time they are
+     * reached, but the result is still the one of the first cache level that fulfills the predicate.
+     * Cache levels whose membership filter rules out the key are skipped, as if they returned the default value.
+     *
+     * @param key key
+     * @param defaultValue default value to emit if unsuccessful
+     * @param cacheFn cache function to perform
+     * @param condition predicate condition
+     * @param <T> type of value
+     * @return Observable that emits the value
+     */
+    private <T> Observable<ResultWrapper<T>> achieveOnce(
+            String key,
+            T defaultValue,
+            Func1<RxCache, Observable<T>> cacheFn,
+            Predicate<T> condition) {
+
+        Func1<Integer, Observable<T>> levelFn = index -> {
+            if (isFilteredOut(index, key)) {
+                return Observable.just(defaultValue);
+            }
+
+            if (guardsReads) {
+                return guardRead(index, Collections.singletonList(key), () -> cacheFn.call(caches.get(index)),
+                        defaultValue);
+            }
+
+            return cacheFn.call(caches.get(index));
+        };
+
+        if (hedgeScheduler != null && caches.size() > 1) {
+            return Observable.defer(() -> achieveHedged(defaultValue, levelFn, condition));
+        }
+
+        return achieveSequentially(defaultValue, levelFn, condition);
+    }
+
+    /**
+     * Starts the lookup of each cache level below the first one after a delay of its index times the hedge delay, or
+     * earlier when the walk through the cache levels reaches it. Lookups that are not needed in the end, as an upper
+     * cache level fulfilled the predicate, are ignored, as are their errors.
+     *
+     * @param defaultValue default value to emit if unsuccessful
+     * @param levelFn function that returns the Observable of the cache level at the given index
+     * @param condition predicate condition
+     * @param <T> type of value
+     * @return Observable that emits the value
+     */
+    private <T> Observable<ResultWrapper<T>> achieveHedged(
+            T defaultValue,
+            Func1<Integer, Observable<T>> levelFn,
+            Predicate<T> condition) {
+
+        List<Observable<T>> lookups = new ArrayList<>(caches.size());
+        CompositeSubscription hedges = new CompositeSubscription();
+
+        for (int i = 0; i < caches.size(); i++) {
+            int index = i;
+
+            Observable<T> lookup = Observable.defer(() -> levelFn.call(index)).cache();
+            lookups.add(lookup);
+
+            if (i > 0) {
+                hedges.add(Observable.timer(hedgeDelayMillis * i, TimeUnit.MILLISECONDS, hedgeScheduler)
+                        .subscribe(tick -> lookup.subscribe(value -> {
+                        }, throwable -> {
+                        })));
+            }
+        }
+
+        return achieveSequentially(defaultValue, lookups::get, condition)
+                .doOnTerminate(hedges::unsubscribe)
+                .doOnUnsubscribe(hedges::unsubscribe);
+    }
+
+    /**
+     * Walks through the cache levels, obtaining the result of each cache level with the level function, until one
+     * cache level fulfills the predicate. The walk is a single operator, see {@link LevelWalk}.
+     *
+     * @param defaultValue default value to emit if unsuccessful
+     * @param levelFn function that returns the Observable of the cache level at the given index
+     * @param condition predicate condition
+     * @param <T> type of value
+     * @return Observable that emits the value
+     */
+    private <T> Observable<ResultWrapper<T>> achieveSequentially(
+            T defaultValue,
+            Func1<Integer, Observable<T>> levelFn,
+            Predicate<T> condition) {
+
+        return Observable.create(new LevelWalk<T, ResultWrapper<T>>(caches.size(), defaultValue, levelFn,
+                (previous, value) -> value, condition, ResultWrapper::new));
+    }
+
+    /**
+     * Writes to the first given number of cache levels, one after another, with the level function.
+     *
+     * @param levelCount number of cache levels to write to
+     * @param defaultValue value to emit if there are no cache levels to write to
+     * @param levelFn function that returns the write Observable of the cache level at the given index
+     * @return Observable that emits <tt>true</tt> if all writes succeeded, <tt>false</tt> otherwise
+     */
+    static Observable<Boolean> writeSequentially(int levelCount, boolean defaultValue,
+            Func1<Integer, Observable<Boolean>> levelFn) {
+
+        return Observable.create(new LevelWalk<Boolean, Boolean>(levelCount, defaultValue, levelFn,
+                WaterfallCache::allSucceeded, success -> false, (success, index) -> success));
+    }
+
+    /**
+     * Merges the result of a write to a cache level into the results of the writes before it.
+     *
+     * @param allSuccess whether the writes before succeeded
+     * @param success whether the write succeeded
+     * @return <tt>true</tt> if all writes succeeded, <tt>false</tt> otherwise
+     */
+    private static Boolean allSucceeded(Boolean allSuccess, Boolean success) {
+        return allSuccess && success;
+    }
+
+    // region asynchronous methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> void getAsync(String key, Type typeOfT, WaterfallGetCallback<T> callback) {
+        checkGetArgs(key, typeOfT);
+
+        Observable<T> get = get(key, typeOfT);
+        AsyncUtils.doAsync(get, callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAsync(String key, Object object, WaterfallCallback callback) {
+        checkPutArgs(key, object);
+
+        AsyncUtils.doAsync(put(key, object), callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void containsAsync(String key, WaterfallGetCallback<Boolean> callback) {
+        checkKeyArg(key);
+
+        AsyncUtils.doAsync(contains(key), callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAsync(String key, WaterfallCallback callback) {
+        checkKeyArg(key);
+
+        AsyncUtils.doAsync(remove(key), callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearAsync(WaterfallCallback callback) {
+        AsyncUtils.doAsync(clear(), callback);
+    }
+
+    // endregion asynchronous methods
+
+    /**
+     * Sets a scheduler to observe on.
+     *
+     * @param scheduler Scheduler
+     */
+    public void setObserveOnScheduler(Scheduler scheduler) {
+        if (scheduler != null) {
+            observeOnScheduler = scheduler;
+        }
+    }
+
+    /**
+     * Release memory under memory pressure, e.g. from {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * Shrinks the inline memory cache, and cache levels implementing {@link Trimmable}, by a share that grows with
+     * the severity of the trim level: a quarter at {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_MODERATE}, half at
+     * {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW} and {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND},
+     * three quarters at {@link ComponentCallbacks2#TRIM_MEMORY_RUNNING_CRITICAL}, and all of it from
+     * {@link ComponentCallbacks2#TRIM_MEMORY_MODERATE} on. Values are only removed from memory, cache levels that
+     * do not implement {@link Trimmable}, such as disk caches, keep them.
+     *
+     * @param level trim level, one of the ComponentCallbacks2 TRIM_MEMORY constants
+     */
+    public void trimMemory(int level) {
+        double fraction = trimFraction(level);
+
+        if (fraction >= 1) {
+            return;
+        }
+
+        if (memoryCache != null) {
+            memoryCache.trim(fraction);
+        }
+
+        for (int i = 0; i < caches.size(); i++) {
+            RxCache cache = caches.get(i);
+
+            if (cache instanceof Trimmable) {
+                ((Trimmable) cache).trim(fraction);
+            }
+        }
+    }
+
+    // fraction of memory to keep at the trim level
+    private static double trimFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return 0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0.5;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // the UI was hidden, memory is not low
+            return 1;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75;
+        }
+
+        return 1;
+    }
+
+    // trims memory when heap usage crosses a threshold, once per threshold until usage drops back to normal, since
+    // trimmed values are only released by a later garbage collection
+    private void watchHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        double usage = (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+
+        int level = heapUsageTrimLevel(usage);
+
+        if (level > heapTrimLevel) {
+            trimMemory(level);
+        }
+
+        heapTrimLevel = level;
+    }
+
+    /**
+     * Stop the heap watcher, see {@link Builder#withHeapWatcher(long, TimeUnit, Scheduler)}. The heap watcher keeps
+     * this cache reachable from its scheduler, so call this once a cache that watches the heap is no longer used.
+     * Memory is then only trimmed when {@link #trimMemory(int)} is called. Does nothing if the heap watcher is
+     * disabled or already stopped.
+     */
+    public void stopHeapWatcher() {
+        if (heapWatcher != null) {
+            heapWatcher.unsubscribe();
+        }
+    }
+
+    /**
+     * Trim level applied by the heap watcher at the given heap usage.
+     *
+     * @param usage used share of the max heap size
+     * @return trim level, 0 if memory should not be trimmed
+     */
+    static int heapUsageTrimLevel(double usage) {
+        if (usage >= HEAP_USAGE_CRITICAL) {
+            return ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+        } else if (usage >= HEAP_USAGE_LOW) {
+            return ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+        } else if (usage >= HEAP_USAGE_MODERATE) {
+            return ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Number of lookups served by the soft memory overflow, see {@link Builder#withSoftMemoryOverflow(boolean)}.
+     *
+     * @return hit count, 0 if the soft memory overflow is disabled
+     */
+    public long getSoftMemoryOverflowHitCount() {
+        return softMemoryCache != null ? softMemoryCache.hitCount() : 0;
+    }
+
+    /**
+     * Number of lookups that missed both the inline memory cache and the soft memory overflow, see
+     * {@link Builder#withSoftMemoryOverflow(boolean)}.
+     *
+     * @return miss count, 0 if the soft memory overflow is disabled
+     */
+    public long getSoftMemoryOverflowMissCount() {
+        return softMemoryCache != null ? softMemoryCache.missCount() : 0;
+    }
+
+    @SuppressWarnings("RedundantCast")
+    private final Transformer schedulersTransformer = observable -> ((Observable) observable).observeOn(
+            observeOnScheduler);
+
+    private <T> Transformer<T, T> applySchedulers() {
+        //noinspection unchecked
+        return (Transformer<T, T>) schedulersTransformer;
+    }
+
+    private interface Predicate<T> {
+        boolean apply(T value);
+    }
+
+    private static class ResultWrapper<T> {
+        private final T result;
+        private final int hitCacheIdx;
+
+        public ResultWrapper(T result, int hitCacheIdx) {
+            this.result = result;
+            this.hitCacheIdx = hitCacheIdx;
+        }
+    }
+
+    /**
+     * Subscribes to one cache level at a time, moving on to the next cache level when the previous one completes
+     * without fulfilling the predicate. The value of each cache level is merged into the values of the cache levels
+     * before it, the predicate is tested on the merged value. Emits the result of the merged value once it fulfills the
+     * predicate, or after the last cache level if it never does, and the index of that level.
+     * Unlike a chain of flatMaps, it builds nothing upfront and allocates the same no matter how many cache levels it
+     * visits: the operator itself, a single subscriber that is reused for each cache level and the result. Like
+     * {@link Observable#defer(Func0)}, the subscriber shares the subscriptions of the downstream subscriber, so
+     * unsubscribing downstream unsubscribes the cache level currently subscribed to.
+     *
+     * @param <T> type of value
+     * @param <R> type of result
+     */
+    private static final class LevelWalk<T, R> implements OnSubscribe<R> {
+        private final int levelCount;
+        private final T defaultValue;
+        private final Func1<Integer, Observable<T>> levelFn;
+        private final Func2<T, T, T> mergeFn;
+        private final Predicate<T> condition;
+        private final Func2<T, Integer, R> resultFn;
+
+        LevelWalk(int levelCount, T defaultValue, Func1<Integer, Observable<T>> levelFn, Func2<T, T, T> mergeFn,
+                Predicate<T> condition, Func2<T, Integer, R> resultFn) {
+
+            this.levelCount = levelCount;
+            this.defaultValue = defaultValue;
+            this.levelFn = levelFn;
+            this.mergeFn = mergeFn;
+            this.condition = condition;
+            this.resultFn = resultFn;
+        }
+
+        @Override
+        public void call(Subscriber<? super R> child) {
+            if (levelCount == 0) {
+                child.onNext(resultFn.call(defaultValue, 0));
+                child.onCompleted();
+                return;
+            }
+
+            new LevelSubscriber(child).visit(0);
+        }
+
+        private final class LevelSubscriber extends Subscriber<T> {
+            private final Subscriber<? super R> child;
+
+            // index of the cache level currently subscribed to and its last value
+            private int index;
+            private T value;
+
+            // values of the cache levels visited so far, merged
+            private T merged;
+
+            LevelSubscriber(Subscriber<? super R> child) {
+                super(child, true);
+                this.child = child;
+            }
+
+            void visit(int index) {
+                if (child.isUnsubscribed()) {
+                    return;
+                }
+
+                this.index = index;
+                this.value = defaultValue;
+
+                Observable<T> level;
+
+                try {
+                    level = levelFn.call(index);
+                } catch (Throwable throwable) {
+                    Exceptions.throwIfFatal(throwable);
+                    child.onError(throwable);
+                    return;
+                }
+
+                level.unsafeSubscribe(this);
+            }
+
+            @Override
+            public void setProducer(Producer producer) {
+                // cache levels emit a single value, requested in full, rather than passing on the downstream requests
+                producer.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T value) {
+                this.value = value;
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                child.onError(e);
+            }
+
+            @Override
+            public void onCompleted() {
+                boolean done;
+                R result = null;
+
+                try {
+                    merged = index == 0 ? value : mergeFn.call(merged, value);
+                    done = index == levelCount - 1 || condition.apply(merged);
+
+                    if (done) {
+                        result = resultFn.call(merged, index);
+                    }
+                } catch (Throwable throwable) {
+                    Exceptions.throwIfFatal(throwable);
+                    child.onError(throwable);
+                    return;
+                }
+
+                if (done) {
+                    child.onNext(result);
+                    child.onCompleted();
+                } else {
+                    visit(index + 1);
+                }
+            }
+        }
+    }
+
+    private static final class InFlightGet {
+        private final String key;
+        private final Type typeOfT;
+        private final boolean loading;
+
+        private Observable<?> observable;
+
+        // in-flight gets of the key this one is registered with
+        private KeyInFlightGets keyGets;
+
+        // set once a put or remove of the key detached this get, its result must not be written anywhere then
+        private volatile boolean detached;
+
+        InFlightGet(String key, Type typeOfT, boolean loading) {
+            this.key = key;
+            this.typeOfT = typeOfT;
+            this.loading = loading;
+        }
+
+        boolean matches(InFlightGet other) {
+            return typeOfT.equals(other.typeOfT) && loading == other.loading;
+        }
+    }
+
+    /**
+     * In-flight gets of a single key, so that a put or remove detaches them without scanning the gets of other keys.
+     * Guarded by its own lock. Closed once removed from the map, gets then register with a new instance.
+     */
+    private static final class KeyInFlightGets {
+        private final List<InFlightGet> gets = new ArrayList<>(1);
+
+        private boolean closed;
+
+        InFlightGet find(InFlightGet inFlightGet) {
+            for (int i = 0; i < gets.size(); i++) {
+                InFlightGet get = gets.get(i);
+
+                if (get.observable != null && get.matches(inFlightGet)) {
+                    return get;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    // region args checks
+
+    private static void checkGetArgs(String key, Type typeOfT) {
+        checkStringArgumentEmpty(key, "key");
+        checkObjectArgumentNull(typeOfT, "typeOfT");
+    }
+
+    private static void checkPutArgs(String key, Object object) {
+        checkStringArgumentEmpty(key, "key");
+        checkObjectArgumentNull(object, "object");
+    }
+
+    private static void checkKeyArg(String key) {
+        checkStringArgumentEmpty(key, "key");
+    }
+
+    private static void checkStringArgumentEmpty(String value, String name) {
+        if (StringUtils.isEmpty(value)) {
+            throw new IllegalArgumentException(String.format("%s is null or empty", name));
+        }
+    }
+
+    private static void checkObjectArgumentNull(Object value, String name) {
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("%s is null", name));
+        }
+    }
+
+    // endregion args checks
+
+    // region Builder
+
+    /**
+     * Creates a new cache builder.
+     *
+     * @return cache builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Cache builder.
+     */
+    public static final class Builder {
+
+        // false positive rate of cache level membership filters
+        private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+        private final List<RxCache> caches;
+        private final List<BloomFilter> filters;
+        private final List<Long> levelReadTimeouts;
+        private final List<Long> levelWriteTimeouts;
+        private boolean hasFilters;
+        private Scheduler filterRebuildScheduler;
+        private int inlineMemoryCacheSize;
+        private Weigher inlineMemoryCacheWeigher;
+        private EvictionPolicy inlineMemoryCacheEviction;
+        private boolean softMemoryOverflow;
+        private boolean promoteToMemoryCache;
+        private AdmissionPolicy admissionPolicy;
+        private boolean containsPrefetch;
+        private NegativeCache negativeCache;
+        private Scheduler backfillScheduler;
+        private WaterfallFailureCallback backgroundErrorCallback;
+        private CacheLoader<?> defaultLoader;
+        private Scheduler parallelWritesScheduler;
+        private Scheduler hedgeScheduler;
+        private long hedgeDelayMillis;
+        private long readTimeoutMillis;
+        private long writeTimeoutMillis;
+        private Scheduler timeoutScheduler;
+        private WaterfallTimeoutCallback timeoutCallback;
+        private int breakerFailureThreshold;
+        private long breakerSlowCallMillis;
+        private long breakerCoolDownMillis;
+        private SimpleTimeProvider breakerTimeProvider;
+        private Scheduler heapWatchScheduler;
+        private long heapWatchPeriodMillis;
+        private Scheduler observeOnScheduler;
+
+        private Builder() {
             caches = new ArrayList<>();
+            filters = new ArrayList<>();
+            levelReadTimeouts = new ArrayList<>();
+            levelWriteTimeouts = new ArrayList<>();
+            promoteToMemoryCache = true;
+            inlineMemoryCacheEviction = EvictionPolicy.LRU;
         }
 
         /**
@@ -369,6 +1788,332 @@ public final class WaterfallCache implements Cache {
          */
         public Builder addMemoryCache(int size) {
             inlineMemoryCacheSize = size;
+            inlineMemoryCacheWeigher = null;
+            return this;
+        }
+
+        /**
+         * Add an inline memory cache bounded by the approximate number of bytes its entries retain, instead of their
+         * number, see {@link ObjectSizeWeigher}. Estimating a value's size walks its object graph on every write to
+         * the memory cache, use {@link #addWeightedMemoryCache(int, Weigher)} with a specialized weigher if that is
+         * too costly.
+         *
+         * @param maxBytes approximate max bytes to cache
+         * @return Builder
+         */
+        public Builder addWeightedMemoryCache(int maxBytes) {
+            return addWeightedMemoryCache(maxBytes, new ObjectSizeWeigher());
+        }
+
+        /**
+         * Add an inline memory cache bounded by the total weight of its entries, instead of their number.
+         * With the {@link EvictionPolicy#LRU} policy the weight is split between segments of the memory cache,
+         * entries heavier than a segment's share are not kept in memory, see
+         * {@link ConcurrentMemoryCache#maxValueWeight()}. They are still put to the cache levels.
+         *
+         * @param maxWeight max total weight of cached entries
+         * @param weigher weigher of entries, e.g. their size in bytes
+         * @return Builder
+         */
+        public Builder addWeightedMemoryCache(int maxWeight, Weigher weigher) {
+            inlineMemoryCacheSize = maxWeight;
+            inlineMemoryCacheWeigher = weigher;
+            return this;
+        }
+
+        /**
+         * Set the eviction policy of the inline memory cache. Defaults to {@link EvictionPolicy#LRU}, has no effect
+         * without an inline memory cache.
+         *
+         * @param policy eviction policy
+         * @return Builder
+         */
+        public Builder withMemoryCacheEviction(EvictionPolicy policy) {
+            this.inlineMemoryCacheEviction = policy;
+            return this;
+        }
+
+        /**
+         * Set whether values evicted from the inline memory cache are kept by soft references, in an overflow tier
+         * that is checked before the cache levels. Values in the overflow are reclaimed by the garbage collector when
+         * the heap runs low, so it serves extra hits while memory is available without risking running out of it.
+         * Hits and misses of the overflow are counted, see {@link WaterfallCache#getSoftMemoryOverflowHitCount()}.
+         * Defaults to <tt>false</tt>, has no effect without an inline memory cache.
+         *
+         * @param enabled <tt>true</tt> to keep evicted values by soft references
+         * @return Builder
+         */
+        public Builder withSoftMemoryOverflow(boolean enabled) {
+            this.softMemoryOverflow = enabled;
+            return this;
+        }
+
+        /**
+         * Set whether values obtained from cache levels are also written to the inline memory cache, so that repeated
+         * gets are served from memory. Defaults to <tt>true</tt>, has no effect without an inline memory cache.
+         *
+         * @param promote <tt>true</tt> to write values obtained from cache levels to the inline memory cache
+         * @return Builder
+         */
+        public Builder withMemoryCachePromotion(boolean promote) {
+            this.promoteToMemoryCache = promote;
+            return this;
+        }
+
+        /**
+         * Only promote values obtained from a lower cache level to the upper cache levels and the inline memory cache,
+         * and only write put values to the inline memory cache, if the admission policy admits them. Values that are
+         * not admitted are still returned and written to all cache levels on put.
+         * By default, all values are admitted.
+         *
+         * @param policy admission policy
+         * @return Builder
+         * @see #withFrequencyAdmission(int)
+         */
+        public Builder withAdmissionPolicy(AdmissionPolicy policy) {
+            this.admissionPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Only promote values of keys read at least twice recently, see {@link #withAdmissionPolicy(AdmissionPolicy)}
+         * and {@link FrequencyAdmissionPolicy}. Keeps one-off reads, e.g. of a scan through many keys, from evicting
+         * frequently read values from the upper cache levels.
+         *
+         * @param expectedKeys expected number of frequently read keys, e.g. the size of the inline memory cache
+         * @return Builder
+         */
+        public Builder withFrequencyAdmission(int expectedKeys) {
+            return withAdmissionPolicy(new FrequencyAdmissionPolicy(expectedKeys));
+        }
+
+        /**
+         * Set whether contains prefetches the value to the upper cache levels when a lower cache level contains the
+         * key. Prefetching reads the whole value from the lower cache level and writes it to the upper ones, so it
+         * defaults to <tt>false</tt>: contains then only checks the cache levels for the key, and the value is moved
+         * to the upper cache levels by the next get of it.
+         *
+         * @param prefetch <tt>true</tt> to prefetch values on contains
+         * @return Builder
+         */
+        public Builder withContainsPrefetch(boolean prefetch) {
+            this.containsPrefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * Remember keys that were found missing in all cache levels, so that repeated gets and contains of them are
+         * answered without looking them up again. A key is remembered until the time to live passes or a value is put
+         * for it through this cache. Disabled by default.
+         *
+         * @param maxSize max number of missing keys to remember
+         * @param ttl time to remember a missing key for
+         * @param ttlUnit time unit of ttl
+         * @return Builder
+         */
+        public Builder withNegativeCache(int maxSize, long ttl, TimeUnit ttlUnit) {
+            return withNegativeCache(maxSize, ttl, ttlUnit, new AndroidSystemTimeProvider());
+        }
+
+        /**
+         * Remember keys that were found missing in all cache levels, see {@link #withNegativeCache(int, long,
+         * TimeUnit)}.
+         *
+         * @param maxSize max number of missing keys to remember
+         * @param ttl time to remember a missing key for
+         * @param ttlUnit time unit of ttl
+         * @param simpleTimeProvider instance of SimpleTimeProvider
+         * @return Builder
+         */
+        public Builder withNegativeCache(int maxSize, long ttl, TimeUnit ttlUnit,
+                SimpleTimeProvider simpleTimeProvider) {
+            this.negativeCache = new NegativeCache(maxSize, ttl, ttlUnit, simpleTimeProvider);
+            return this;
+        }
+
+        /**
+         * Write values obtained from a lower cache level back to the upper cache levels in the background, on the
+         * given scheduler. The value is emitted as soon as it is read, without waiting for the writes to complete.
+         * Write errors are reported to the callback set by {@link #withBackgroundErrorCallback}.
+         * By default, values are written back before they are emitted.
+         *
+         * @param scheduler scheduler to write values back on, e.g. Schedulers.io()
+         * @return Builder
+         */
+        public Builder withAsyncBackfill(Scheduler scheduler) {
+            this.backfillScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Perform put, remove and clear on all cache levels in parallel, each level subscribed to on the given
+         * scheduler. The operation then takes as long as the slowest cache level instead of the sum of all levels
+         * and emits <tt>true</tt> only if all levels succeeded.
+         * By default, cache levels are written to sequentially, from the first to the last level.
+         *
+         * @param scheduler scheduler to subscribe to each cache level on, e.g. Schedulers.io()
+         * @return Builder
+         */
+        public Builder withParallelWrites(Scheduler scheduler) {
+            this.parallelWritesScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Hedge reads: start looking up the next cache level if the previous one did not respond within the given
+         * delay, instead of waiting for its miss. The lookup of cache level N starts at N times the delay at the
+         * latest, a delay of 0 looks up all cache levels in parallel. Cache level priority is preserved: a value is
+         * obtained from a lower cache level only after all upper cache levels missed.
+         * By default, cache levels are looked up strictly one after another.
+         *
+         * @param delay delay after which the next cache level is looked up
+         * @param unit time unit of the delay
+         * @param scheduler scheduler to start hedged lookups on, e.g. Schedulers.io()
+         * @return Builder
+         */
+        public Builder withHedgedReads(long delay, TimeUnit unit, Scheduler scheduler) {
+            this.hedgeDelayMillis = unit.toMillis(delay);
+            this.hedgeScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Bound the time each cache level may take for a single read or write, so that a hanging cache level does not
+         * hang the whole cache. A read that times out is treated as a miss and the lookup continues with the next
+         * cache level. A write that times out is treated as unsuccessful and reported to the callback set by
+         * {@link #withTimeoutCallback(WaterfallTimeoutCallback)}. The timed out operation is not cancelled in the
+         * cache level itself, only no longer waited for.
+         * These timeouts apply to all cache levels that were not added with timeouts of their own, see
+         * {@link #addCache(RxCache, long, long, TimeUnit)}.
+         * By default, reads and writes are not bounded.
+         *
+         * @param readTimeout max time of a read from a cache level, 0 to leave reads unbounded
+         * @param writeTimeout max time of a write to a cache level, 0 to leave writes unbounded
+         * @param unit time unit of the timeouts
+         * @param scheduler scheduler to time the reads and writes on, e.g. Schedulers.computation()
+         * @return Builder
+         */
+        public Builder withLevelTimeouts(long readTimeout, long writeTimeout, TimeUnit unit, Scheduler scheduler) {
+            checkTimeouts(readTimeout, writeTimeout, unit);
+
+            if (scheduler == null) {
+                throw new IllegalArgumentException("scheduler is null");
+            }
+
+            this.readTimeoutMillis = unit.toMillis(readTimeout);
+            this.writeTimeoutMillis = unit.toMillis(writeTimeout);
+            this.timeoutScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set a callback to receive cache level read and write timeouts, see
+         * {@link #withLevelTimeouts(long, long, TimeUnit, Scheduler)}. Defaults to logging write timeouts.
+         *
+         * @param callback callback that will be invoked when a cache level times out
+         * @return Builder
+         */
+        public Builder withTimeoutCallback(WaterfallTimeoutCallback callback) {
+            this.timeoutCallback = callback;
+            return this;
+        }
+
+        /**
+         * Guard each cache level with a circuit breaker. After the given number of consecutive failed or slow
+         * operations, the cache level is bypassed for the cool-down time: reads skip it as if it missed, writes to it
+         * are skipped and reported as unsuccessful. Once the cool-down passes, a single operation probes whether the
+         * cache level recovered, closing the circuit if it succeeds in time.
+         * With circuit breakers enabled, cache level errors no longer fail the operation, they are treated the same
+         * way and reported to the callback set by {@link #withBackgroundErrorCallback(WaterfallFailureCallback)}.
+         * Note that values put or removed while a cache level is bypassed are not updated in that level.
+         * Disabled by default.
+         *
+         * @param failureThreshold number of consecutive failures that open the circuit
+         * @param slowCall operations that take longer than this count as failures, 0 to only count errors and timeouts
+         * @param coolDown time to bypass the cache level for
+         * @param unit time unit of slowCall and coolDown
+         * @return Builder
+         */
+        public Builder withCircuitBreaker(int failureThreshold, long slowCall, long coolDown, TimeUnit unit) {
+            return withCircuitBreaker(failureThreshold, slowCall, coolDown, unit, new AndroidSystemTimeProvider());
+        }
+
+        /**
+         * Guard each cache level with a circuit breaker, see {@link #withCircuitBreaker(int, long, long, TimeUnit)}.
+         *
+         * @param failureThreshold number of consecutive failures that open the circuit
+         * @param slowCall operations that take longer than this count as failures, 0 to only count errors and timeouts
+         * @param coolDown time to bypass the cache level for
+         * @param unit time unit of slowCall and coolDown
+         * @param simpleTimeProvider instance of SimpleTimeProvider
+         * @return Builder
+         */
+        public Builder withCircuitBreaker(int failureThreshold, long slowCall, long coolDown, TimeUnit unit,
+                SimpleTimeProvider simpleTimeProvider) {
+
+            if (failureThreshold <= 0) {
+                throw new IllegalArgumentException("failureThreshold <= 0");
+            }
+
+            this.breakerFailureThreshold = failureThreshold;
+            this.breakerSlowCallMillis = unit.toMillis(slowCall);
+            this.breakerCoolDownMillis = unit.toMillis(coolDown);
+            this.breakerTimeProvider = simpleTimeProvider;
+            return this;
+        }
+
+        /**
+         * Watch heap usage and trim memory automatically, see {@link WaterfallCache#trimMemory(int)}. Once used heap
+         * crosses 75%, 85% or 95% of the max heap size, memory is trimmed as at the running moderate, low or critical
+         * trim level respectively, once per level until heap usage drops below 75% again.
+         * By default, memory is only trimmed when {@link WaterfallCache#trimMemory(int)} is called.
+         * The heap watcher runs until {@link WaterfallCache#stopHeapWatcher()} is called, each cache built starts its
+         * own, so build a cache that watches the heap once, e.g. as a process wide singleton, or stop it when done.
+         *
+         * @param period period of checking heap usage
+         * @param unit time unit of period
+         * @param scheduler scheduler to check heap usage on, e.g. Schedulers.computation()
+         * @return Builder
+         */
+        public Builder withHeapWatcher(long period, TimeUnit unit, Scheduler scheduler) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("period <= 0");
+            }
+
+            if (unit == null) {
+                throw new IllegalArgumentException("unit is null");
+            }
+
+            if (scheduler == null) {
+                throw new IllegalArgumentException("scheduler is null");
+            }
+
+            this.heapWatchPeriodMillis = unit.toMillis(period);
+            this.heapWatchScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set a callback to receive errors of operations the cache performs in the background, which can not be
+         * reported to the caller. Defaults to logging them.
+         *
+         * @param callback callback that will be invoked to report background errors
+         * @return Builder
+         */
+        public Builder withBackgroundErrorCallback(WaterfallFailureCallback callback) {
+            this.backgroundErrorCallback = callback;
+            return this;
+        }
+
+        /**
+         * Set a loader that {@link WaterfallCache#get(String, Type)} uses to load values that no cache level contains,
+         * making it read-through. The loader must return values of the type passed to it. Disabled by default.
+         *
+         * @param loader default loader
+         * @return Builder
+         */
+        public Builder withLoader(CacheLoader<?> loader) {
+            this.defaultLoader = loader;
             return this;
         }
 
@@ -393,6 +2138,35 @@ public final class WaterfallCache implements Cache {
             return addCache(cache);
         }
 
+        /**
+         * Add a memory-mapped log disk cache to the cache levels, as an alternative to
+         * {@link #addDiskCache(Context, int)}, that reads values from a memory-mapped file instead of a file per value.
+         * The log is kept in the cache directory of the context, in a file of the given name. Each log must have its
+         * own file name, caches that map the same log would corrupt it.
+         *
+         * @param context context
+         * @param fileName name of the log file, unique among the logs of the app
+         * @param sizeInBytes size of the log file in bytes
+         * @return Builder
+         * @see MappedLogCache
+         */
+        public Builder addMappedLogDiskCache(Context context, String fileName, int sizeInBytes) {
+            if (fileName == null || fileName.isEmpty()) {
+                throw new IllegalArgumentException("fileName is empty");
+            }
+
+            MappedLogCache cache;
+
+            try {
+                cache = new MappedLogCache(new File(context.getCacheDir(), fileName), sizeInBytes);
+            } catch (IOException e) {
+                Log.w(WaterfallCache.class.getSimpleName(), e.getMessage());
+                return this;
+            }
+
+            return addCache(cache);
+        }
+
         /**
          * Add a generic cache to the cache levels.
          *
@@ -400,10 +2174,134 @@ public final class WaterfallCache implements Cache {
          * @return Builder
          */
         public Builder addCache(RxCache cache) {
+            return addLevel(cache, null, null, null);
+        }
+
+        /**
+         * Add a generic cache to the cache levels, bounding the time each read from and write to it may take, instead
+         * of the timeouts set by {@link #withLevelTimeouts(long, long, TimeUnit, Scheduler)}, e.g. shorter for a
+         * memory level than for a remote one. Timeouts are timed on the scheduler set by
+         * {@link #withLevelTimeouts(long, long, TimeUnit, Scheduler)}, Schedulers.computation() if none is set.
+         *
+         * @param cache cache
+         * @param readTimeout max time of a read from the cache level, 0 to leave reads unbounded
+         * @param writeTimeout max time of a write to the cache level, 0 to leave writes unbounded
+         * @param unit time unit of the timeouts
+         * @return Builder
+         */
+        public Builder addCache(RxCache cache, long readTimeout, long writeTimeout, TimeUnit unit) {
+            checkTimeouts(readTimeout, writeTimeout, unit);
+
+            return addLevel(cache, null, unit.toMillis(readTimeout), unit.toMillis(writeTimeout));
+        }
+
+        /**
+         * Add a generic cache to the cache levels, with an in-memory membership filter of the keys it holds.
+         * Reads skip the cache level when the filter rules out the key, saving a lookup that would miss.
+         * The filter is built from the cache level's keys in the background once the cache is built, until then all
+         * reads go to the cache level, see {@link #withFilterRebuildScheduler(Scheduler)}. All writes to the cache
+         * level must go through the WaterfallCache for the filter to be correct.
+         *
+         * @param cache cache that can list its keys
+         * @param expectedKeys expected number of keys in the cache level, the filter takes ~10 bits per key
+         * @param <C> type of cache
+         * @return Builder
+         */
+        public <C extends RxCache & EnumerableCache> Builder addFilteredCache(C cache, int expectedKeys) {
+            hasFilters = true;
+            return addLevel(cache, new BloomFilter(expectedKeys, FILTER_FALSE_POSITIVE_RATE), null, null);
+        }
+
+        // null timeouts use the timeouts of all cache levels
+        private Builder addLevel(RxCache cache, BloomFilter filter, Long readTimeoutMillis, Long writeTimeoutMillis) {
             caches.add(cache);
+            filters.add(filter);
+            levelReadTimeouts.add(readTimeoutMillis);
+            levelWriteTimeouts.add(writeTimeoutMillis);
+            return this;
+        }
+
+        private static void checkTimeouts(long readTimeout, long writeTimeout, TimeUnit unit) {
+            if (readTimeout < 0) {
+                throw new IllegalArgumentException("readTimeout < 0");
+            }
+
+            if (writeTimeout < 0) {
+                throw new IllegalArgumentException("writeTimeout < 0");
+            }
+
+            if (unit == null) {
+                throw new IllegalArgumentException("unit is null");
+            }
+        }
+
+        // timeout of each cache level, the default timeout for levels without a timeout of their own
+        private static long[] levelTimeouts(List<Long> timeouts, long defaultTimeout) {
+            long[] levelTimeouts = new long[timeouts.size()];
+
+            for (int i = 0; i < levelTimeouts.length; i++) {
+                Long timeout = timeouts.get(i);
+                levelTimeouts[i] = timeout != null ? timeout : defaultTimeout;
+            }
+
+            return levelTimeouts;
+        }
+
+        private static boolean anyBounded(long[] timeouts) {
+            for (long timeout : timeouts) {
+                if (timeout > 0) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Set the scheduler the membership filters of cache levels added by
+         * {@link #addFilteredCache(RxCache, int)} are built on when the cache is built. Building a filter lists all
+         * keys of its cache level, e.g. from disk. Defaults to Schedulers.io().
+         *
+         * @param scheduler scheduler to build the filters on
+         * @return Builder
+         */
+        public Builder withFilterRebuildScheduler(Scheduler scheduler) {
+            if (scheduler == null) {
+                throw new IllegalArgumentException("scheduler is null");
+            }
+
+            this.filterRebuildScheduler = scheduler;
             return this;
         }
 
+        private MemoryCache buildMemoryCache(SoftMemoryCache softMemoryCache) {
+            if (inlineMemoryCacheSize <= 0) {
+                return null;
+            }
+
+            if (softMemoryCache != null) {
+                return new TieredMemoryCache(inlineMemoryCacheEviction, inlineMemoryCacheSize, inlineMemoryCacheWeigher,
+                        softMemoryCache);
+            }
+
+            return inlineMemoryCacheEviction.create(inlineMemoryCacheSize, inlineMemoryCacheWeigher);
+        }
+
+        private List<CircuitBreaker> buildBreakers() {
+            if (breakerFailureThreshold <= 0) {
+                return null;
+            }
+
+            List<CircuitBreaker> breakers = new ArrayList<>(caches.size());
+
+            for (int i = 0; i < caches.size(); i++) {
+                breakers.add(new CircuitBreaker(breakerFailureThreshold, breakerSlowCallMillis, breakerCoolDownMillis,
+                        TimeUnit.MILLISECONDS, breakerTimeProvider));
+            }
+
+            return breakers;
+        }
+
         /**
          * Builds the WaterfallCache.
          *
@@ -414,7 +2312,15 @@ public final class WaterfallCache implements Cache {
                 observeOnScheduler = AndroidSchedulers.mainThread();
             }
 
-            return new WaterfallCache(caches, observeOnScheduler, inlineMemoryCacheSize);
+            if (filterRebuildScheduler == null) {
+                filterRebuildScheduler = Schedulers.io();
+            }
+
+            if (timeoutScheduler == null) {
+                timeoutScheduler = Schedulers.computation();
+            }
+
+            return new WaterfallCache(this);
         }
     }
 
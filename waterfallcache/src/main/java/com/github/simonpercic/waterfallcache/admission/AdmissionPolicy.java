@@ -0,0 +1,27 @@
+package com.github.simonpercic.waterfallcache.admission;
+
+/**
+ * Decides which values are worth keeping in the upper cache levels.
+ * Consulted by {@link com.github.simonpercic.waterfallcache.WaterfallCache} before it promotes a value obtained from a
+ * cache level to the upper cache levels and the inline memory cache, and before it writes a put value to the inline
+ * memory cache. Implementations must be thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface AdmissionPolicy {
+
+    /**
+     * Records a read of the key.
+     *
+     * @param key key
+     */
+    void recordAccess(String key);
+
+    /**
+     * Whether the value of the key should be admitted to the upper cache levels.
+     *
+     * @param key key
+     * @return <tt>true</tt> to admit the value
+     */
+    boolean admit(String key);
+}
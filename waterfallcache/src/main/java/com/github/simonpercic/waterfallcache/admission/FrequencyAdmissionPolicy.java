@@ -0,0 +1,60 @@
+package com.github.simonpercic.waterfallcache.admission;
+
+/**
+ * Admission policy that admits keys read often enough recently, TinyLFU style.
+ * Read frequencies are estimated by a {@link FrequencySketch}, which ages them over time. A key read only once, e.g.
+ * by a scan through many keys, is not admitted, so it does not evict frequently read values from the upper cache
+ * levels.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class FrequencyAdmissionPolicy implements AdmissionPolicy {
+
+    // default number of recent reads a key needs to be admitted
+    private static final int DEFAULT_MIN_FREQUENCY = 2;
+
+    // read frequencies
+    private final FrequencySketch sketch;
+
+    // number of recent reads a key needs to be admitted
+    private final int minFrequency;
+
+    /**
+     * Frequency admission policy, admits keys read at least twice recently.
+     *
+     * @param expectedKeys expected number of keys of interest, e.g. the size of the inline memory cache
+     */
+    public FrequencyAdmissionPolicy(int expectedKeys) {
+        this(expectedKeys, DEFAULT_MIN_FREQUENCY);
+    }
+
+    /**
+     * Frequency admission policy.
+     *
+     * @param expectedKeys expected number of keys of interest, e.g. the size of the inline memory cache
+     * @param minFrequency number of recent reads a key needs to be admitted, between 1 and
+     * {@link FrequencySketch#MAX_FREQUENCY}
+     */
+    public FrequencyAdmissionPolicy(int expectedKeys, int minFrequency) {
+        if (minFrequency < 1 || minFrequency > FrequencySketch.MAX_FREQUENCY) {
+            throw new IllegalArgumentException("minFrequency out of range");
+        }
+
+        this.sketch = new FrequencySketch(expectedKeys);
+        this.minFrequency = minFrequency;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void recordAccess(String key) {
+        sketch.increment(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean admit(String key) {
+        return sketch.frequency(key) >= minFrequency;
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.simonpercic.waterfallcache.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch of the recent access frequency of String keys.
+ * Keeps four 4-bit counters per key, spread over a table sized for the expected number of keys, and estimates the
+ * frequency as the smallest of them. Once the number of recorded accesses reaches ten times the expected number of
+ * keys, all counters are halved, so that the sketch favours recent accesses. Thread safe, concurrent increments are
+ * exact, halving is approximate.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class FrequencySketch {
+
+    // max value of a 4-bit counter
+    public static final int MAX_FREQUENCY = 15;
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    // clears the top bit of each counter after shifting right by one
+    private static final long HALVING_MASK = 0x7777777777777777L;
+
+    // counters, 16 per table entry
+    private final AtomicLongArray table;
+
+    // mask of a table index
+    private final int tableMask;
+
+    // number of recorded accesses after which counters are halved
+    private final int sampleSize;
+
+    // number of accesses recorded since the last halving
+    private final AtomicInteger size;
+
+    /**
+     * Frequency sketch.
+     *
+     * @param expectedKeys expected number of distinct keys of interest, e.g. the capacity of the cache it serves
+     */
+    public FrequencySketch(int expectedKeys) {
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("expectedKeys <= 0");
+        }
+
+        int length = Math.min(Integer.highestOneBit(Math.max(expectedKeys, 8) - 1), 1 << 29) << 1;
+
+        this.table = new AtomicLongArray(length);
+        this.tableMask = length - 1;
+        this.sampleSize = (int) Math.min(10L * expectedKeys, Integer.MAX_VALUE);
+        this.size = new AtomicInteger();
+    }
+
+    /**
+     * Estimates the recent access frequency of the key.
+     *
+     * @param key key
+     * @return estimated frequency, between 0 and {@link #MAX_FREQUENCY}
+     */
+    public int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            long slot = slot(hash, i);
+            int shift = (int) slot;
+            int count = (int) ((table.get((int) (slot >>> 32)) >>> shift) & 0xf);
+
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key.
+     *
+     * @param key key
+     */
+    public void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean incremented = false;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            long slot = slot(hash, i);
+            incremented |= incrementAt((int) (slot >>> 32), (int) slot);
+        }
+
+        if (incremented && size.incrementAndGet() >= sampleSize) {
+            halve();
+        }
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0);
+        }
+
+        size.set(0);
+    }
+
+    // table index in the upper 32 bits, bit shift of the counter in the lower 32 bits
+    private long slot(int hash, int depth) {
+        long seeded = (hash + SEEDS[depth]) * SEEDS[depth];
+        seeded += seeded >>> 32;
+
+        int index = (int) seeded & tableMask;
+        int counter = (((hash >>> (depth << 3)) & 3) << 2) + depth;
+
+        return ((long) index << 32) | (counter << 2);
+    }
+
+    private boolean incrementAt(int index, int shift) {
+        long mask = 0xfL << shift;
+
+        while (true) {
+            long value = table.get(index);
+
+            if ((value & mask) == mask) {
+                return false;
+            }
+
+            if (table.compareAndSet(index, value, value + (1L << shift))) {
+                return true;
+            }
+        }
+    }
+
+    private void halve() {
+        synchronized (this) {
+            if (size.get() < sampleSize) {
+                return;
+            }
+
+            for (int i = 0; i < table.length(); i++) {
+                while (true) {
+                    long value = table.get(i);
+
+                    if (table.compareAndSet(i, value, (value >>> 1) & HALVING_MASK)) {
+                        break;
+                    }
+                }
+            }
+
+            size.set(size.get() / 2);
+        }
+    }
+
+    // supplemental hash, spreads poorly distributed String hash codes
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import rx.Observable;
+
+/**
+ * Cache that operates on many keys at once.
+ * Optional capability of a cache level, implement it next to {@link RxCache} when the level can handle a batch of keys
+ * more efficiently than one key at a time. Cache levels that don't implement it are used one key at a time, see
+ * {@link com.github.simonpercic.waterfallcache.utils.BatchUtils}.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface BatchCache {
+
+    /**
+     * Get many values from cache.
+     *
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param <T> T of cache values
+     * @return Observable that emits the values found in cache, mapped by their keys; keys not found are left out
+     */
+    <T> Observable<Map<String, T>> getAll(List<String> keys, Type typeOfT);
+
+    /**
+     * Put many values to cache.
+     *
+     * @param values values, mapped by their keys
+     * @return Observable that emits <tt>true</tt> if all were successful, <tt>false</tt> otherwise
+     */
+    Observable<Boolean> putAll(Map<String, ?> values);
+
+    /**
+     * Remove many cache values.
+     *
+     * @param keys keys
+     * @return Observable that emits <tt>true</tt> if all were successful, <tt>false</tt> otherwise
+     */
+    Observable<Boolean> removeAll(List<String> keys);
+}
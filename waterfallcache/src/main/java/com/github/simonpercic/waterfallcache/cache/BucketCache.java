@@ -6,8 +6,16 @@ import com.github.simonpercic.bucket.Bucket;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
 
 /**
  * Bucket disk cache.
@@ -15,11 +23,20 @@ import rx.Observable;
  *
  * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
  */
-public class BucketCache implements RxCache {
+public class BucketCache implements RxCache, BatchCache {
+
+    // default max number of Bucket calls of a batch operation in progress at a time
+    private static final int DEFAULT_MAX_CONCURRENT_BATCH_CALLS = 4;
 
     // Bucket disk cache
     private final Bucket bucket;
 
+    // max number of Bucket calls of a batch operation in progress at a time
+    private final int maxConcurrentBatchCalls;
+
+    // Scheduler the Bucket calls of batch operations are subscribed on
+    private final Scheduler batchScheduler;
+
     /**
      * Bucket disk cache.
      *
@@ -28,7 +45,32 @@ public class BucketCache implements RxCache {
      * @throws IOException
      */
     public BucketCache(Context context, long maxSizeBytes) throws IOException {
+        this(context, maxSizeBytes, DEFAULT_MAX_CONCURRENT_BATCH_CALLS, Schedulers.io());
+    }
+
+    /**
+     * Bucket disk cache.
+     *
+     * @param context context
+     * @param maxSizeBytes max size of cache in bytes
+     * @param maxConcurrentBatchCalls max number of Bucket calls of a batch operation in progress at a time
+     * @param batchScheduler Scheduler to subscribe to the Bucket calls of batch operations on
+     * @throws IOException
+     */
+    public BucketCache(Context context, long maxSizeBytes, int maxConcurrentBatchCalls, Scheduler batchScheduler)
+            throws IOException {
+
+        if (maxConcurrentBatchCalls <= 0) {
+            throw new IllegalArgumentException("maxConcurrentBatchCalls <= 0");
+        }
+
+        if (batchScheduler == null) {
+            throw new IllegalArgumentException("batchScheduler is null");
+        }
+
         this.bucket = Bucket.builder(context, maxSizeBytes).build();
+        this.maxConcurrentBatchCalls = maxConcurrentBatchCalls;
+        this.batchScheduler = batchScheduler;
     }
 
     /**
@@ -65,4 +107,45 @@ public class BucketCache implements RxCache {
     @Override public Observable<Boolean> clear() {
         return bucket.clearRx();
     }
+
+    /**
+     * {@inheritDoc}
+     * Bucket has no batch API, reads one key per Bucket call, with up to the max number of concurrent batch calls in
+     * progress at a time, on the batch scheduler.
+     */
+    @Override public <T> Observable<Map<String, T>> getAll(List<String> keys, Type typeOfT) {
+        if (keys.isEmpty()) {
+            return Observable.just(Collections.<String, T>emptyMap());
+        }
+
+        return Observable.from(keys)
+                .flatMap(key -> bucket.<T>getRx(key, typeOfT)
+                        .subscribeOn(batchScheduler)
+                        .filter(value -> value != null)
+                        .map(value -> new SimpleImmutableEntry<>(key, value)), maxConcurrentBatchCalls)
+                .toMap(Entry::getKey, Entry::getValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Bucket has no batch API, writes one value per Bucket call, with up to the max number of concurrent batch calls
+     * in progress at a time, on the batch scheduler.
+     */
+    @Override public Observable<Boolean> putAll(Map<String, ?> values) {
+        return Observable.from(new ArrayList<>(values.entrySet()))
+                .flatMap(entry -> bucket.putRx(entry.getKey(), entry.getValue()).subscribeOn(batchScheduler),
+                        maxConcurrentBatchCalls)
+                .reduce(true, (allSuccess, success) -> allSuccess && success);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Bucket has no batch API, removes one key per Bucket call, with up to the max number of concurrent batch calls
+     * in progress at a time, on the batch scheduler.
+     */
+    @Override public Observable<Boolean> removeAll(List<String> keys) {
+        return Observable.from(keys)
+                .flatMap(key -> bucket.removeRx(key).subscribeOn(batchScheduler), maxConcurrentBatchCalls)
+                .reduce(true, (allSuccess, success) -> allSuccess && success);
+    }
 }
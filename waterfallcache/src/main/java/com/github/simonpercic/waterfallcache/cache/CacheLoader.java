@@ -0,0 +1,25 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import java.lang.reflect.Type;
+
+import rx.Observable;
+
+/**
+ * Loads values that no cache level contains, e.g. from the network.
+ * Used by the read-through gets of {@link com.github.simonpercic.waterfallcache.WaterfallCache}, which write the loaded
+ * value to all cache levels.
+ *
+ * @param <T> T of loaded value
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface CacheLoader<T> {
+
+    /**
+     * Load the value for the key.
+     *
+     * @param key key
+     * @param typeOfT type of value
+     * @return Observable that emits the loaded value, or <tt>null</tt> if there is no value for the key
+     */
+    Observable<T> load(String key, Type typeOfT);
+}
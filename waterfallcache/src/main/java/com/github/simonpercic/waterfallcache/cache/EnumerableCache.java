@@ -0,0 +1,23 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import java.util.List;
+
+import rx.Observable;
+
+/**
+ * Cache that can list the keys it holds.
+ * Optional capability of a cache level, needed to build a membership filter of the level, see
+ * {@link com.github.simonpercic.waterfallcache.WaterfallCache.Builder#addFilteredCache(RxCache, int)}.
+ * Implemented by {@link MemoryRxCache}, {@link OffHeapRxCache} and {@link MappedLogCache}.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface EnumerableCache {
+
+    /**
+     * Keys of all values in cache.
+     *
+     * @return Observable that emits the list of keys
+     */
+    Observable<List<String>> keys();
+}
@@ -0,0 +1,160 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import com.github.simonpercic.waterfallcache.disk.MappedLog;
+import com.github.simonpercic.waterfallcache.serialize.JavaValueSerializer;
+import com.github.simonpercic.waterfallcache.serialize.ValueSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Memory-mapped log disk cache.
+ * Stores serialized values in an append-only log in a memory-mapped file, see {@link MappedLog}. Unlike
+ * {@link BucketCache}, which keeps a file per value, a read does not open a file, it copies the value out of the
+ * mapped log, which the page cache usually holds in memory. Reads emit synchronously on subscription. Writes are
+ * subscribed on the write scheduler, {@link Schedulers#io()} by default, since a write may compact the log, which
+ * writes a new log file.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class MappedLogCache implements RxCache, EnumerableCache {
+
+    // log of serialized values
+    private final MappedLog log;
+
+    // serializer of values
+    private final ValueSerializer serializer;
+
+    // Scheduler puts, removes and clears are subscribed on
+    private final Scheduler writeScheduler;
+
+    /**
+     * Memory-mapped log disk cache, storing values with Java serialization.
+     *
+     * @param file log file, created if it does not exist
+     * @param maxSizeBytes size of the log file in bytes
+     * @throws IOException if the log file can not be mapped
+     */
+    public MappedLogCache(File file, long maxSizeBytes) throws IOException {
+        this(file, maxSizeBytes, new JavaValueSerializer());
+    }
+
+    /**
+     * Memory-mapped log disk cache.
+     *
+     * @param file log file, created if it does not exist
+     * @param maxSizeBytes size of the log file in bytes, values that serialize to more than half of it are not cached
+     * @param serializer serializer of values
+     * @throws IOException if the log file can not be mapped
+     */
+    public MappedLogCache(File file, long maxSizeBytes, ValueSerializer serializer) throws IOException {
+        this(file, maxSizeBytes, serializer, Schedulers.io());
+    }
+
+    /**
+     * Memory-mapped log disk cache.
+     *
+     * @param file log file, created if it does not exist
+     * @param maxSizeBytes size of the log file in bytes, values that serialize to more than half of it are not cached
+     * @param serializer serializer of values
+     * @param writeScheduler Scheduler to subscribe puts, removes and clears on
+     * @throws IOException if the log file can not be mapped
+     */
+    public MappedLogCache(File file, long maxSizeBytes, ValueSerializer serializer, Scheduler writeScheduler)
+            throws IOException {
+
+        if (writeScheduler == null) {
+            throw new IllegalArgumentException("writeScheduler is null");
+        }
+
+        this.log = new MappedLog(file, maxSizeBytes);
+        this.serializer = serializer;
+        this.writeScheduler = writeScheduler;
+    }
+
+    /**
+     * {@inheritDoc}
+     * A value that can not be deserialized is treated as a miss.
+     */
+    @Override public <T> Observable<T> get(String key, Type typeOfT) {
+        return Observable.defer(() -> {
+            byte[] bytes = log.get(key);
+
+            if (bytes == null) {
+                return Observable.just(null);
+            }
+
+            T value;
+
+            try {
+                value = serializer.deserialize(bytes, typeOfT);
+            } catch (IOException e) {
+                value = null;
+            }
+
+            return Observable.just(value);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * Emits <tt>false</tt> if the serialized value is too large to be cached.
+     */
+    @Override public Observable<Boolean> put(String key, Object object) {
+        return Observable.defer(() -> {
+            try {
+                return Observable.just(log.put(key, serializer.serialize(object)));
+            } catch (IOException e) {
+                return Observable.error(e);
+            }
+        }).subscribeOn(writeScheduler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> contains(String key) {
+        return Observable.defer(() -> Observable.just(log.contains(key)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> remove(String key) {
+        return Observable.defer(() -> {
+            try {
+                log.remove(key);
+                return Observable.just(true);
+            } catch (IOException e) {
+                return Observable.error(e);
+            }
+        }).subscribeOn(writeScheduler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> clear() {
+        return Observable.defer(() -> {
+            try {
+                log.clear();
+                return Observable.just(true);
+            } catch (IOException e) {
+                return Observable.error(e);
+            }
+        }).subscribeOn(writeScheduler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<List<String>> keys() {
+        return Observable.defer(() -> Observable.just(log.keys()));
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import com.github.simonpercic.waterfallcache.memory.EvictionPolicy;
+import com.github.simonpercic.waterfallcache.memory.MemoryCache;
+import com.github.simonpercic.waterfallcache.memory.Weigher;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import rx.Observable;
+
+/**
+ * Memory cache level.
+ * Exposes a {@link MemoryCache} as a cache level, so that memory caches can be placed at any level of a
+ * {@link com.github.simonpercic.waterfallcache.WaterfallCache}, or several stacked, e.g. a small TinyLFU level above a
+ * larger LRU level. Values are stored as they are, without serialization, and emitted synchronously on subscription.
+ * Has no Android dependencies, so it can be used in plain JVM tests and benchmarks.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class MemoryRxCache implements RxCache, PeekableCache, Trimmable, EnumerableCache {
+
+    // underlying memory cache
+    private final MemoryCache cache;
+
+    /**
+     * Memory cache level, bounded by the number of values, that evicts the least recently used values.
+     *
+     * @param maxSize max number of values
+     */
+    public MemoryRxCache(int maxSize) {
+        this(maxSize, EvictionPolicy.LRU);
+    }
+
+    /**
+     * Memory cache level, bounded by the number of values.
+     *
+     * @param maxSize max number of values
+     * @param policy eviction policy
+     */
+    public MemoryRxCache(int maxSize, EvictionPolicy policy) {
+        this(maxSize, null, policy);
+    }
+
+    /**
+     * Memory cache level, bounded by the total weight of values.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     * @param policy eviction policy
+     */
+    public MemoryRxCache(int maxWeight, Weigher weigher, EvictionPolicy policy) {
+        this(policy.create(maxWeight, weigher));
+    }
+
+    /**
+     * Memory cache level.
+     *
+     * @param cache underlying memory cache
+     */
+    public MemoryRxCache(MemoryCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public <T> Observable<T> get(String key, Type typeOfT) {
+        return Observable.defer(() -> Observable.just(this.<T>getIfPresent(key)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> put(String key, Object object) {
+        return Observable.defer(() -> Observable.just(cache.put(key, object)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> contains(String key) {
+        return Observable.defer(() -> Observable.just(cache.get(key) != null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> remove(String key) {
+        return Observable.defer(() -> {
+            cache.remove(key);
+            return Observable.just(true);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> clear() {
+        return Observable.defer(() -> {
+            cache.clear();
+            return Observable.just(true);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<List<String>> keys() {
+        return Observable.defer(() -> Observable.just(cache.keys()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public <T> T getIfPresent(String key) {
+        // a key is read with the type of value it was put with
+        @SuppressWarnings("unchecked")
+        T value = (T) cache.get(key);
+
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void trim(double fraction) {
+        cache.trim(fraction);
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import com.github.simonpercic.waterfallcache.offheap.OffHeapStore;
+import com.github.simonpercic.waterfallcache.serialize.JavaValueSerializer;
+import com.github.simonpercic.waterfallcache.serialize.ValueSerializer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import rx.Observable;
+
+/**
+ * Off-heap memory cache level.
+ * Stores values serialized in direct memory, outside of the Java heap, see {@link OffHeapStore}. Large amounts of
+ * cached data then add neither to garbage collection pauses nor to the number of heap objects, at the cost of
+ * serializing values on put and deserializing them on get. Fits between the inline memory cache and disk cache levels.
+ * Emits synchronously on subscription.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class OffHeapRxCache implements RxCache, Trimmable, EnumerableCache {
+
+    // default size of a slab of direct memory, also the max size of a serialized value
+    private static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+    // stores serialized values
+    private final OffHeapStore store;
+
+    // serializer of values
+    private final ValueSerializer serializer;
+
+    /**
+     * Off-heap memory cache level, with 1 MB slabs, storing values with Java serialization.
+     *
+     * @param maxBytes max bytes of direct memory to allocate
+     */
+    public OffHeapRxCache(long maxBytes) {
+        this(maxBytes, DEFAULT_SLAB_SIZE, new JavaValueSerializer());
+    }
+
+    /**
+     * Off-heap memory cache level.
+     *
+     * @param maxBytes max bytes of direct memory to allocate
+     * @param slabSize size of a slab of direct memory in bytes, values that serialize to more, together with their key,
+     * are not cached
+     * @param serializer serializer of values
+     */
+    public OffHeapRxCache(long maxBytes, int slabSize, ValueSerializer serializer) {
+        this.store = new OffHeapStore(maxBytes, slabSize);
+        this.serializer = serializer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * A value that can not be deserialized is removed and treated as a miss.
+     */
+    @Override public <T> Observable<T> get(String key, Type typeOfT) {
+        return Observable.defer(() -> {
+            byte[] bytes = store.get(key);
+
+            if (bytes == null) {
+                return Observable.just(null);
+            }
+
+            T value;
+
+            try {
+                value = serializer.deserialize(bytes, typeOfT);
+            } catch (IOException e) {
+                store.remove(key);
+                value = null;
+            }
+
+            return Observable.just(value);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * Emits <tt>false</tt> if the serialized value and key are larger than a slab, errors if the value can not be
+     * serialized.
+     */
+    @Override public Observable<Boolean> put(String key, Object object) {
+        return Observable.defer(() -> {
+            byte[] bytes;
+
+            try {
+                bytes = serializer.serialize(object);
+            } catch (IOException e) {
+                store.remove(key);
+                return Observable.error(e);
+            }
+
+            return Observable.just(store.put(key, bytes));
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> contains(String key) {
+        return Observable.defer(() -> Observable.just(store.contains(key)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> remove(String key) {
+        return Observable.defer(() -> {
+            store.remove(key);
+            return Observable.just(true);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<Boolean> clear() {
+        return Observable.defer(() -> {
+            store.clear();
+            return Observable.just(true);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Observable<List<String>> keys() {
+        return Observable.defer(() -> Observable.just(store.keys()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Releases slabs of direct memory together with their values, see {@link OffHeapStore#trim(double)}.
+     */
+    @Override public void trim(double fraction) {
+        store.trim(fraction);
+    }
+}
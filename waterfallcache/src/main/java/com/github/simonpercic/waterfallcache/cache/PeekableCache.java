@@ -0,0 +1,20 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+/**
+ * Cache that can return the values it holds in memory synchronously.
+ * Optional capability of a cache level, implement it next to {@link RxCache} to let
+ * {@link com.github.simonpercic.waterfallcache.WaterfallCache#getIfPresent(String)} read from the level.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface PeekableCache {
+
+    /**
+     * Get from cache, synchronously, without deserializing or blocking on I/O.
+     *
+     * @param key key
+     * @param <T> T of cache value
+     * @return cache value or <tt>null</tt> if the value is not immediately available
+     */
+    <T> T getIfPresent(String key);
+}
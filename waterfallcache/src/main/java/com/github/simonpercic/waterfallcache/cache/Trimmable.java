@@ -0,0 +1,18 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+/**
+ * Cache that can release memory under memory pressure.
+ * Optional capability of a cache level, implement it next to {@link RxCache} to let
+ * {@link com.github.simonpercic.waterfallcache.WaterfallCache#trimMemory(int)} shrink the level.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface Trimmable {
+
+    /**
+     * Shrink the memory held by the cache to about the given fraction of what it currently holds, synchronously.
+     *
+     * @param fraction fraction of the memory to keep, between 0 to release as much as possible and 1 to keep all
+     */
+    void trim(double fraction);
+}
@@ -0,0 +1,24 @@
+package com.github.simonpercic.waterfallcache.callback;
+
+/**
+ * WaterfallCache cache level timeout callback.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface WaterfallTimeoutCallback {
+
+    /**
+     * Called when a read from a cache level timed out. The read was treated as a miss.
+     *
+     * @param levelIndex index of the cache level
+     */
+    void onReadTimeout(int levelIndex);
+
+    /**
+     * Called when a write to a cache level timed out. The write was treated as unsuccessful, it might still complete
+     * in the cache level.
+     *
+     * @param levelIndex index of the cache level
+     */
+    void onWriteTimeout(int levelIndex);
+}
@@ -0,0 +1,298 @@
+package com.github.simonpercic.waterfallcache.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Append-only log of byte values in a memory-mapped file.
+ * Puts and removes append records to the end of the log, an in-memory index maps each key to the offset of its latest
+ * record. Values are read straight out of the mapped file, so reads of recently used values are served from the page
+ * cache without any system calls. The index is rebuilt by scanning the log when it is opened.
+ * Once the log is full, it is compacted: the latest records of the most recently written keys are copied to a new
+ * file, which replaces the log, up to half of its capacity, older keys are evicted. A record's length is written last,
+ * so a record torn by a crash ends the log. Writes are not forced to storage, except on compaction. Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class MappedLog {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // record layout: record length, key length, value length or TOMBSTONE, key bytes, value bytes
+    private static final int LENGTH_OFFSET = 0;
+    private static final int KEY_LENGTH_OFFSET = 4;
+    private static final int VALUE_LENGTH_OFFSET = 8;
+    private static final int HEADER_SIZE = 12;
+
+    // value length of a remove record
+    private static final int TOMBSTONE = -1;
+
+    // suffix of the file a log is compacted to
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    // log file
+    private final File file;
+
+    // size of the mapped file
+    private final int capacity;
+
+    // record offsets, by key
+    private final Map<String, Integer> index;
+
+    // mapped log file
+    private MappedByteBuffer buffer;
+
+    // offset the next record is appended at
+    private int writePosition;
+
+    /**
+     * Open the log, creating the file if it does not exist.
+     *
+     * @param file log file
+     * @param capacity size of the log file in bytes, at most 2 GB can be mapped
+     * @throws IOException if the file can not be mapped
+     */
+    public MappedLog(File file, long capacity) throws IOException {
+        if (capacity < 2 * HEADER_SIZE) {
+            throw new IllegalArgumentException("capacity < " + 2 * HEADER_SIZE);
+        }
+
+        this.file = file;
+        this.capacity = (int) Math.min(capacity, Integer.MAX_VALUE);
+        this.index = new HashMap<>();
+        this.buffer = map(file);
+
+        scan();
+    }
+
+    /**
+     * Get value.
+     *
+     * @param key key
+     * @return copy of the value, <tt>null</tt> if the log does not contain it
+     */
+    public synchronized byte[] get(String key) {
+        Integer offset = index.get(key);
+
+        if (offset == null) {
+            return null;
+        }
+
+        byte[] bytes = new byte[buffer.getInt(offset + VALUE_LENGTH_OFFSET)];
+        buffer.position(offset + HEADER_SIZE + buffer.getInt(offset + KEY_LENGTH_OFFSET));
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Put value, compacting the log if it is full.
+     *
+     * @param key key
+     * @param bytes value
+     * @return <tt>true</tt> if put, <tt>false</tt> if the key and value take up more than half of the log capacity
+     * @throws IOException if the log could not be compacted
+     */
+    public synchronized boolean put(String key, byte[] bytes) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF_8);
+
+        if (HEADER_SIZE + keyBytes.length + bytes.length > capacity / 2) {
+            remove(key);
+            return false;
+        }
+
+        index.put(key, append(keyBytes, bytes));
+        return true;
+    }
+
+    /**
+     * Whether the log contains the key.
+     *
+     * @param key key
+     * @return <tt>true</tt> if it contains the key
+     */
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Remove value, appending a record of the removal, so that it is not found again once the log is reopened.
+     *
+     * @param key key
+     * @throws IOException if the log could not be compacted
+     */
+    public synchronized void remove(String key) throws IOException {
+        if (index.remove(key) != null) {
+            append(key.getBytes(UTF_8), null);
+        }
+    }
+
+    /**
+     * Remove all values, replacing the log with an empty one.
+     *
+     * @throws IOException if the log could not be replaced
+     */
+    public synchronized void clear() throws IOException {
+        index.clear();
+        compact(0);
+    }
+
+    /**
+     * Keys of all values.
+     *
+     * @return keys
+     */
+    public synchronized List<String> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Number of values.
+     *
+     * @return size
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    // appends a record, a null value appends a remove record, returns the offset of the record
+    private int append(byte[] keyBytes, byte[] bytes) throws IOException {
+        int length = HEADER_SIZE + keyBytes.length + (bytes != null ? bytes.length : 0);
+
+        if (writePosition + length > capacity) {
+            compact(length);
+        }
+
+        int offset = writePosition;
+
+        buffer.putInt(offset + KEY_LENGTH_OFFSET, keyBytes.length);
+        buffer.putInt(offset + VALUE_LENGTH_OFFSET, bytes != null ? bytes.length : TOMBSTONE);
+        buffer.position(offset + HEADER_SIZE);
+        buffer.put(keyBytes);
+
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+
+        // written last, commits the record
+        buffer.putInt(offset + LENGTH_OFFSET, length);
+
+        writePosition = offset + length;
+        return offset;
+    }
+
+    // rebuilds the index from the log, stops at the first record that is missing or torn
+    private void scan() {
+        int offset = 0;
+
+        while (offset + HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(offset + LENGTH_OFFSET);
+            int keyLength = buffer.getInt(offset + KEY_LENGTH_OFFSET);
+            int valueLength = buffer.getInt(offset + VALUE_LENGTH_OFFSET);
+
+            boolean valid = length > 0 && keyLength >= 0 && valueLength >= TOMBSTONE
+                    && length <= capacity - offset
+                    && length == HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+
+            if (!valid) {
+                break;
+            }
+
+            byte[] keyBytes = new byte[keyLength];
+            buffer.position(offset + HEADER_SIZE);
+            buffer.get(keyBytes);
+
+            String key = new String(keyBytes, UTF_8);
+
+            if (valueLength == TOMBSTONE) {
+                index.remove(key);
+            } else {
+                index.put(key, offset);
+            }
+
+            offset += length;
+        }
+
+        writePosition = offset;
+    }
+
+    // copies the latest records of the most recently written keys to a new log, leaving room for the given length
+    private void compact(int reserve) throws IOException {
+        List<Entry<String, Integer>> records = new ArrayList<>(index.entrySet());
+
+        // newest first
+        Collections.sort(records, (first, second) -> second.getValue().compareTo(first.getValue()));
+
+        int budget = Math.max(0, capacity / 2 - reserve);
+        int kept = 0;
+        int keptLength = 0;
+
+        while (kept < records.size()) {
+            int length = buffer.getInt(records.get(kept).getValue() + LENGTH_OFFSET);
+
+            if (keptLength + length > budget) {
+                break;
+            }
+
+            keptLength += length;
+            kept++;
+        }
+
+        File compactFile = new File(file.getPath() + COMPACT_SUFFIX);
+
+        if (compactFile.exists() && !compactFile.delete()) {
+            throw new IOException("Unable to delete " + compactFile);
+        }
+
+        MappedByteBuffer compacted = map(compactFile);
+        Map<String, Integer> offsets = new HashMap<>();
+        int offset = 0;
+
+        // oldest first, so that the log keeps its order
+        for (int i = kept - 1; i >= 0; i--) {
+            Entry<String, Integer> record = records.get(i);
+            int length = buffer.getInt(record.getValue() + LENGTH_OFFSET);
+
+            byte[] bytes = new byte[length];
+            buffer.position(record.getValue());
+            buffer.get(bytes);
+
+            compacted.position(offset);
+            compacted.put(bytes);
+
+            offsets.put(record.getKey(), offset);
+            offset += length;
+        }
+
+        compacted.force();
+
+        if (!compactFile.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+
+        buffer = compacted;
+        writePosition = offset;
+        index.clear();
+        index.putAll(offsets);
+    }
+
+    private MappedByteBuffer map(File mappedFile) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(mappedFile, "rw");
+
+        try {
+            // the mapping stays valid once the file is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
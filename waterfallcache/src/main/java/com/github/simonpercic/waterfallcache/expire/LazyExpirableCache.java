@@ -1,6 +1,9 @@
 package com.github.simonpercic.waterfallcache.expire;
 
+import android.util.Log;
+
 import com.github.simonpercic.waterfallcache.cache.Cache;
+import com.github.simonpercic.waterfallcache.cache.CacheLoader;
 import com.github.simonpercic.waterfallcache.cache.RxCache;
 import com.github.simonpercic.waterfallcache.callback.WaterfallCallback;
 import com.github.simonpercic.waterfallcache.callback.WaterfallGetCallback;
@@ -8,14 +11,19 @@ import com.github.simonpercic.waterfallcache.utils.AsyncUtils;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.Scheduler;
 
 /**
  * Lazily expirable cache.
  * Cache items expire after a set time.
  * Being lazy, items only expire when getting them from cache.
+ * Optionally refreshes items ahead of their expiration: items older than the refresh time are still returned, while
+ * a background refresh replaces them with a freshly loaded value.
  *
  * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
  */
@@ -30,10 +38,27 @@ public final class LazyExpirableCache implements Cache {
     // time observable
     private final Observable<Long> timeObservable;
 
-    private LazyExpirableCache(RxCache underlyingCache, long expireMillis, Observable<Long> timeObservable) {
+    // refresh after milliseconds, only used with a loader
+    private final long refreshMillis;
+
+    // loader of refreshed values, null if refresh ahead is disabled
+    private final CacheLoader<?> loader;
+
+    // Scheduler to perform refreshes on
+    private final Scheduler refreshScheduler;
+
+    // keys currently being refreshed
+    private final ConcurrentMap<String, Boolean> refreshing;
+
+    private LazyExpirableCache(RxCache underlyingCache, long expireMillis, Observable<Long> timeObservable,
+            long refreshMillis, CacheLoader<?> loader, Scheduler refreshScheduler) {
         this.underlyingCache = underlyingCache;
         this.expireMillis = expireMillis;
         this.timeObservable = timeObservable;
+        this.refreshMillis = refreshMillis;
+        this.loader = loader;
+        this.refreshScheduler = refreshScheduler;
+        this.refreshing = new ConcurrentHashMap<>();
     }
 
     /**
@@ -78,7 +103,78 @@ public final class LazyExpirableCache implements Cache {
             Observable<Long> timeObservable) {
 
         long millis = expireAfterUnit.toMillis(expireAfter);
-        return new LazyExpirableCache(cache, millis, timeObservable);
+        return new LazyExpirableCache(cache, millis, timeObservable, millis, null, null);
+    }
+
+    /**
+     * Creates a refresh ahead lazy expirable cache from an actual Cache.
+     * Values older than the refresh time are still returned, but trigger a single background refresh of the value
+     * with the loader. Values older than the expire time are removed.
+     *
+     * @param cache the underlying cache that will hold the values
+     * @param refreshAfter refresh after value
+     * @param expireAfter expire after value
+     * @param unit time unit of refresh after and expire after
+     * @param loader loader of refreshed values
+     * @param refreshScheduler Scheduler to perform refreshes on
+     * @return lazy expirable cache instance
+     */
+    public static LazyExpirableCache fromCache(RxCache cache, long refreshAfter, long expireAfter, TimeUnit unit,
+            CacheLoader<?> loader, Scheduler refreshScheduler) {
+
+        return fromCache(cache, refreshAfter, expireAfter, unit, loader, refreshScheduler,
+                new AndroidSystemTimeProvider());
+    }
+
+    /**
+     * Creates a refresh ahead lazy expirable cache from an actual Cache.
+     *
+     * @param cache the underlying cache that will hold the values
+     * @param refreshAfter refresh after value
+     * @param expireAfter expire after value
+     * @param unit time unit of refresh after and expire after
+     * @param loader loader of refreshed values
+     * @param refreshScheduler Scheduler to perform refreshes on
+     * @param simpleTimeProvider instance of SimpleTimeProvider
+     * @return lazy expirable cache instance
+     */
+    public static LazyExpirableCache fromCache(RxCache cache, long refreshAfter, long expireAfter, TimeUnit unit,
+            CacheLoader<?> loader, Scheduler refreshScheduler, SimpleTimeProvider simpleTimeProvider) {
+
+        Observable<Long> timeObservable = Observable.defer(() -> Observable.just(simpleTimeProvider.currentTime()));
+
+        return fromCache(cache, refreshAfter, expireAfter, unit, loader, refreshScheduler, timeObservable);
+    }
+
+    /**
+     * Creates a refresh ahead lazy expirable cache from an actual Cache.
+     *
+     * @param cache the underlying cache that will hold the values
+     * @param refreshAfter refresh after value
+     * @param expireAfter expire after value
+     * @param unit time unit of refresh after and expire after
+     * @param loader loader of refreshed values
+     * @param refreshScheduler Scheduler to perform refreshes on
+     * @param timeObservable instance of a time observable
+     * @return lazy expirable cache instance
+     */
+    public static LazyExpirableCache fromCache(RxCache cache, long refreshAfter, long expireAfter, TimeUnit unit,
+            CacheLoader<?> loader, Scheduler refreshScheduler, Observable<Long> timeObservable) {
+
+        if (loader == null) {
+            throw new IllegalArgumentException("loader is null");
+        }
+
+        if (refreshScheduler == null) {
+            throw new IllegalArgumentException("refreshScheduler is null");
+        }
+
+        if (refreshAfter > expireAfter) {
+            throw new IllegalArgumentException("refreshAfter is greater than expireAfter");
+        }
+
+        return new LazyExpirableCache(cache, unit.toMillis(expireAfter), timeObservable, unit.toMillis(refreshAfter),
+                loader, refreshScheduler);
     }
 
     // region Reactive methods
@@ -88,6 +184,19 @@ public final class LazyExpirableCache implements Cache {
      */
     @Override
     public <T> Observable<T> get(String key, Type type) {
+        return get(key, type, true);
+    }
+
+    /**
+     * Get from cache, expiring the value if it is too old.
+     *
+     * @param key key
+     * @param type type of cache value
+     * @param refresh whether to refresh the value if it is older than the refresh time
+     * @param <T> T of cache value
+     * @return Observable that emits the cache value, <tt>null</tt> if there is none or it expired
+     */
+    private <T> Observable<T> get(String key, Type type, boolean refresh) {
         TimedValueType timedValueType = new TimedValueType(type);
 
         return timeObservable.flatMap(currentTime ->
@@ -98,12 +207,53 @@ public final class LazyExpirableCache implements Cache {
 
                     if (timedValue.addedOn + expireMillis < currentTime) {
                         return underlyingCache.remove(key).map(success -> null);
-                    } else {
-                        return Observable.just(timedValue.value);
                     }
+
+                    if (refresh && loader != null && timedValue.addedOn + refreshMillis < currentTime) {
+                        refresh(key, type, timedValue.addedOn);
+                    }
+
+                    return Observable.just(timedValue.value);
                 }));
     }
 
+    /**
+     * Loads the value with the loader and puts it to cache, in the background.
+     * Does nothing if the key is already being refreshed. The loaded value is not put if the cached value was put or
+     * removed while loading, so that an older loaded value does not overwrite a newer one.
+     *
+     * @param key key
+     * @param type type of cache value
+     * @param addedOn time the refreshed value was added on
+     */
+    private void refresh(String key, Type type, long addedOn) {
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+
+        TimedValueType timedValueType = new TimedValueType(type);
+
+        Observable.defer(() -> loader.load(key, type))
+                .lastOrDefault(null)
+                .flatMap(value -> {
+                    if (value == null) {
+                        return Observable.just(false);
+                    }
+
+                    return underlyingCache.<TimedValue<Object>>get(key, timedValueType).flatMap(timedValue -> {
+                        if (timedValue == null || timedValue.addedOn != addedOn) {
+                            return Observable.just(false);
+                        }
+
+                        return put(key, value);
+                    });
+                })
+                .doOnTerminate(() -> refreshing.remove(key))
+                .subscribeOn(refreshScheduler)
+                .subscribe(success -> {
+                }, throwable -> Log.w(LazyExpirableCache.class.getSimpleName(), "Refresh failed", throwable));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -120,7 +270,7 @@ public final class LazyExpirableCache implements Cache {
      */
     @Override
     public Observable<Boolean> contains(String key) {
-        return get(key, Object.class).flatMap(o -> Observable.just(o != null));
+        return get(key, Object.class, false).flatMap(o -> Observable.just(o != null));
     }
 
     /**
@@ -0,0 +1,143 @@
+package com.github.simonpercic.waterfallcache.expire;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Negative cache.
+ * Remembers keys recently found missing, for a limited time and up to a maximum number of keys, evicting the oldest
+ * first. A miss is only recorded if its key was not invalidated since the lookup started, invalidating a key does not
+ * affect lookups of other keys. Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class NegativeCache {
+
+    // missing keys, mapped to the time they expire on, in insertion order
+    private final LinkedHashMap<String, Long> misses;
+
+    // time to remember a miss for, in milliseconds
+    private final long ttlMillis;
+
+    // time provider
+    private final SimpleTimeProvider timeProvider;
+
+    // epochs of the latest invalidation of recently invalidated keys, in insertion order
+    private final LinkedHashMap<String, Long> invalidations;
+
+    // incremented on every invalidation
+    private long epoch;
+
+    // misses of lookups started before this epoch are not recorded, raised by invalidating all keys and by forgetting
+    // invalidations of keys to keep their number bounded
+    private long minLookupEpoch;
+
+    /**
+     * Negative cache.
+     *
+     * @param maxSize max number of missing keys to remember
+     * @param ttl time to remember a miss for
+     * @param ttlUnit time unit of ttl
+     * @param timeProvider time provider
+     */
+    public NegativeCache(int maxSize, long ttl, TimeUnit ttlUnit, SimpleTimeProvider timeProvider) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        this.ttlMillis = ttlUnit.toMillis(ttl);
+        this.timeProvider = timeProvider;
+
+        this.misses = new LinkedHashMap<String, Long>() {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        this.invalidations = new LinkedHashMap<String, Long>() {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > maxSize) {
+                    minLookupEpoch = eldest.getValue();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the current epoch, to pass to {@link #recordMiss(String, long)} once the lookup completes.
+     *
+     * @return current epoch
+     */
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Whether the key was recently found missing.
+     *
+     * @param key key
+     * @return <tt>true</tt> if the key is known to be missing
+     */
+    public synchronized boolean isKnownMissing(String key) {
+        Long expiresOn = misses.get(key);
+
+        if (expiresOn == null) {
+            return false;
+        }
+
+        if (expiresOn <= timeProvider.currentTime()) {
+            misses.remove(key);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Records a miss of the key, unless the key was invalidated since the lookup started.
+     *
+     * @param key key
+     * @param lookupEpoch epoch obtained with {@link #epoch()} before the lookup started
+     */
+    public synchronized void recordMiss(String key, long lookupEpoch) {
+        if (lookupEpoch < minLookupEpoch) {
+            return;
+        }
+
+        Long invalidatedOn = invalidations.get(key);
+
+        if (invalidatedOn != null && invalidatedOn > lookupEpoch) {
+            return;
+        }
+
+        misses.remove(key);
+        misses.put(key, timeProvider.currentTime() + ttlMillis);
+    }
+
+    /**
+     * Forgets the miss of the key, e.g. when a value is put for it.
+     *
+     * @param key key
+     */
+    public synchronized void invalidate(String key) {
+        epoch++;
+        misses.remove(key);
+
+        invalidations.remove(key);
+        invalidations.put(key, epoch);
+    }
+
+    /**
+     * Forgets all misses.
+     */
+    public synchronized void invalidateAll() {
+        epoch++;
+        minLookupEpoch = epoch;
+        misses.clear();
+        invalidations.clear();
+    }
+}
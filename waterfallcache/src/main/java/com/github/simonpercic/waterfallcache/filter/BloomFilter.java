@@ -0,0 +1,199 @@
+package com.github.simonpercic.waterfallcache.filter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of String keys.
+ * Answers whether a key might have been put into the filter, without false negatives. Keys can not be removed.
+ * Until it is first built or cleared, the filter does not know which keys it holds and reports all of them as possibly
+ * contained. Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class BloomFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // number of bits
+    private final int numBits;
+
+    // number of bits set per key
+    private final int numHashes;
+
+    // bits of the filter
+    private volatile AtomicLongArray bits;
+
+    // bits of a rebuild in progress, receive keys put in the meantime
+    private volatile AtomicLongArray pendingBits;
+
+    // whether the filter holds all keys
+    private volatile boolean ready;
+
+    /**
+     * Bloom filter.
+     *
+     * @param expectedKeys expected number of keys
+     * @param falsePositiveRate desired false positive rate at the expected number of keys, between 0 and 1
+     */
+    public BloomFilter(int expectedKeys, double falsePositiveRate) {
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("expectedKeys <= 0");
+        }
+
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+
+        double ln2 = Math.log(2);
+        long bitCount = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+
+        this.numBits = (int) Math.max(Long.SIZE, Math.min(bitCount, Integer.MAX_VALUE - Long.SIZE));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedKeys * ln2));
+        this.bits = newBits();
+    }
+
+    /**
+     * Returns <tt>false</tt> if the key was definitely not put into the filter, <tt>true</tt> if it might have been.
+     *
+     * @param key key
+     * @return <tt>false</tt> if the filter does not contain the key
+     */
+    public boolean mightContain(String key) {
+        if (!ready) {
+            return true;
+        }
+
+        AtomicLongArray current = bits;
+
+        long hash = hash(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < numHashes; i++) {
+            int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+
+            if ((current.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Puts the key into the filter.
+     *
+     * @param key key
+     */
+    public void put(String key) {
+        // read pending bits first, so that a key is never missed by a rebuild that completes in between
+        AtomicLongArray pending = pendingBits;
+
+        setBits(bits, key);
+
+        if (pending != null) {
+            setBits(pending, key);
+        }
+    }
+
+    /**
+     * Removes all keys from the filter. The filter is ready afterwards, as it is known to hold no keys.
+     */
+    public void clear() {
+        AtomicLongArray current = bits;
+
+        for (int i = 0; i < current.length(); i++) {
+            current.set(i, 0);
+        }
+
+        ready = true;
+    }
+
+    /**
+     * Begins rebuilding the filter. Must be called before obtaining the keys to rebuild from, keys put from now on
+     * are also included in the rebuilt filter.
+     */
+    public void beginRebuild() {
+        pendingBits = newBits();
+    }
+
+    /**
+     * Completes the rebuild started by {@link #beginRebuild()} by replacing the filter with the given keys and the
+     * keys put in the meantime. The filter is ready afterwards.
+     *
+     * @param keys all keys of the filtered cache
+     */
+    public void finishRebuild(List<String> keys) {
+        AtomicLongArray pending = pendingBits;
+
+        if (pending == null) {
+            return;
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            setBits(pending, keys.get(i));
+        }
+
+        bits = pending;
+        pendingBits = null;
+        ready = true;
+    }
+
+    /**
+     * Abandons the rebuild started by {@link #beginRebuild()}, leaving the filter as it was.
+     */
+    public void abortRebuild() {
+        pendingBits = null;
+    }
+
+    /**
+     * Whether the filter holds all keys and can rule keys out.
+     *
+     * @return <tt>true</tt> if the filter is ready
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    private AtomicLongArray newBits() {
+        return new AtomicLongArray((numBits + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    private void setBits(AtomicLongArray target, String key) {
+        long hash = hash(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < numHashes; i++) {
+            int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+
+            while (true) {
+                long value = target.get(word);
+
+                if ((value & mask) != 0 || target.compareAndSet(word, value, value | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // 64-bit FNV-1a hash of the key's characters
+    private static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }
+}
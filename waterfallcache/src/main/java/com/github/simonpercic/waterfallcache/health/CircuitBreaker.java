@@ -0,0 +1,213 @@
+package com.github.simonpercic.waterfallcache.health;
+
+import com.github.simonpercic.waterfallcache.expire.SimpleTimeProvider;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable.Operator;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Circuit breaker of a cache level.
+ * Closed while the cache level is healthy. Opens after a number of consecutive failed or slow operations, rejecting
+ * all operations for a cool-down period. After the cool-down it half-opens, letting a single probe operation through:
+ * the circuit closes again if the probe succeeds in time, and re-opens otherwise. Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class CircuitBreaker {
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    // number of consecutive failures that open the circuit
+    private final int failureThreshold;
+
+    // operations that take longer count as failures, 0 if latency is not monitored
+    private final long slowCallMillis;
+
+    // time the circuit stays open for, before letting a probe through
+    private final long coolDownMillis;
+
+    // time provider
+    private final SimpleTimeProvider timeProvider;
+
+    // monitors operations passed through the circuit
+    private final Operator<?, ?> monitor;
+
+    // state of the circuit
+    private int state;
+
+    // consecutive failures while closed
+    private int failures;
+
+    // time the circuit was opened on
+    private long openedOn;
+
+    // whether the probe of the half-open circuit is in progress
+    private boolean probing;
+
+    /**
+     * Circuit breaker.
+     *
+     * @param failureThreshold number of consecutive failures that open the circuit
+     * @param slowCall operations that take longer than this count as failures, 0 to not monitor latency
+     * @param coolDown time the circuit stays open for
+     * @param unit time unit of slowCall and coolDown
+     * @param timeProvider time provider
+     */
+    public CircuitBreaker(int failureThreshold, long slowCall, long coolDown, TimeUnit unit,
+            SimpleTimeProvider timeProvider) {
+
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold <= 0");
+        }
+
+        this.failureThreshold = failureThreshold;
+        this.slowCallMillis = unit.toMillis(slowCall);
+        this.coolDownMillis = unit.toMillis(coolDown);
+        this.timeProvider = timeProvider;
+        this.monitor = new Monitor<>();
+    }
+
+    /**
+     * Whether an operation may pass through the circuit. Once the cool-down of an open circuit passes, the first call
+     * is let through as the probe, following calls are rejected until the probe completes.
+     * An operation that was let through must be passed through {@link #monitor()}. Call this when subscribing to the
+     * operation, e.g. in {@link rx.Observable#defer(rx.functions.Func0)}, so that the probe is released if the
+     * operation is unsubscribed from, rather than held by an operation that is never subscribed to.
+     *
+     * @return <tt>true</tt> if the operation may be performed, <tt>false</tt> if the cache level should be bypassed
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == CLOSED) {
+            return true;
+        }
+
+        if (state == OPEN && timeProvider.currentTime() - openedOn >= coolDownMillis) {
+            state = HALF_OPEN;
+        }
+
+        if (state == HALF_OPEN && !probing) {
+            probing = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Whether the circuit is closed, i.e. the cache level is considered healthy.
+     *
+     * @return <tt>true</tt> if closed
+     */
+    public synchronized boolean isClosed() {
+        return state == CLOSED;
+    }
+
+    /**
+     * Returns the operator that records the outcome of an operation that was let through the circuit. Errors and
+     * operations slower than the slow call time count as failures, operations unsubscribed from before they
+     * terminate count as neither.
+     *
+     * @param <T> type of value
+     * @return monitoring operator
+     */
+    public <T> Operator<T, T> monitor() {
+        // the monitor passes values through untouched, so a single instance serves every type
+        @SuppressWarnings("unchecked")
+        Operator<T, T> typedMonitor = (Operator<T, T>) monitor;
+
+        return typedMonitor;
+    }
+
+    private synchronized void onSuccess(long durationMillis) {
+        if (slowCallMillis > 0 && durationMillis > slowCallMillis) {
+            onFailure();
+            return;
+        }
+
+        state = CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    private synchronized void onFailure() {
+        if (state == HALF_OPEN || ++failures >= failureThreshold) {
+            state = OPEN;
+            openedOn = timeProvider.currentTime();
+            failures = 0;
+        }
+
+        probing = false;
+    }
+
+    private synchronized void onCancel() {
+        probing = false;
+    }
+
+    private final class Monitor<T> implements Operator<T, T> {
+
+        @Override
+        public Subscriber<? super T> call(Subscriber<? super T> child) {
+            long startedOn = timeProvider.currentTime();
+
+            MonitorSubscriber<T> parent = new MonitorSubscriber<>(child, startedOn);
+            child.add(Subscriptions.create(parent::onUnsubscribe));
+            return parent;
+        }
+    }
+
+    private final class MonitorSubscriber<T> extends Subscriber<T> {
+        private final Subscriber<? super T> child;
+        private final long startedOn;
+
+        private boolean done;
+
+        MonitorSubscriber(Subscriber<? super T> child, long startedOn) {
+            super(child);
+            this.child = child;
+            this.startedOn = startedOn;
+        }
+
+        @Override
+        public void onNext(T value) {
+            child.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if (finish()) {
+                onFailure();
+            }
+
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (finish()) {
+                onSuccess(timeProvider.currentTime() - startedOn);
+            }
+
+            child.onCompleted();
+        }
+
+        void onUnsubscribe() {
+            if (finish()) {
+                onCancel();
+            }
+        }
+
+        private synchronized boolean finish() {
+            if (done) {
+                return false;
+            }
+
+            done = true;
+            return true;
+        }
+    }
+}
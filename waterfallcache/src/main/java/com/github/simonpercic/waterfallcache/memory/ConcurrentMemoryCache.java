@@ -0,0 +1,310 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent memory cache that evicts approximately the least recently used value.
+ * Reads take no lock: they look the value up in a concurrent map and mark it as accessed. Writes lock one of several
+ * segments, chosen by the key's hash, so writes of different keys rarely contend. Each segment evicts with the CLOCK
+ * algorithm: values are kept in insertion order, a value up for eviction that was accessed since it was last checked
+ * gets a second chance and moves to the back instead. Capacity is split evenly between the segments, so a value
+ * heavier than the capacity of a segment is rejected, even if the cache as a whole has room for it, see
+ * {@link #put(String, Object)}. Pass a concurrency level of 1 to use a single segment holding the whole capacity.
+ * Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class ConcurrentMemoryCache implements MemoryCache {
+
+    // min capacity of a segment, fewer segments are used for smaller caches
+    private static final int MIN_SEGMENT_WEIGHT = 16;
+
+    // values, by key
+    private final ConcurrentHashMap<String, Node> nodes;
+
+    // segments, by key hash
+    private final Segment[] segments;
+
+    // mask of a segment index
+    private final int segmentMask;
+
+    // weigher of values, null to count values
+    private final Weigher weigher;
+
+    // listener of evicted values, null if none
+    private final EvictionListener evictionListener;
+
+    /**
+     * Concurrent memory cache, bounded by the number of values.
+     *
+     * @param maxSize max number of values
+     */
+    public ConcurrentMemoryCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Concurrent memory cache, bounded by the total weight of values, with a segment per available processor.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     */
+    public ConcurrentMemoryCache(int maxWeight, Weigher weigher) {
+        this(maxWeight, weigher, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Concurrent memory cache, bounded by the total weight of values.
+     * A value heavier than the capacity of a segment is not cached.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     * @param concurrencyLevel expected number of concurrent writers, the number of segments is the next power of two
+     */
+    public ConcurrentMemoryCache(int maxWeight, Weigher weigher, int concurrencyLevel) {
+        this(maxWeight, weigher, concurrencyLevel, null);
+    }
+
+    /**
+     * Concurrent memory cache, bounded by the total weight of values.
+     * A value heavier than the capacity of a segment is not cached.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     * @param concurrencyLevel expected number of concurrent writers, the number of segments is the next power of two
+     * @param evictionListener listener of evicted values, <tt>null</tt> if none
+     */
+    public ConcurrentMemoryCache(int maxWeight, Weigher weigher, int concurrencyLevel,
+            EvictionListener evictionListener) {
+
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight <= 0");
+        }
+
+        int segmentCount = 1;
+
+        while (segmentCount < concurrencyLevel && maxWeight / (segmentCount << 1) >= MIN_SEGMENT_WEIGHT) {
+            segmentCount <<= 1;
+        }
+
+        this.nodes = new ConcurrentHashMap<>(16, 0.75f, segmentCount);
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+
+        for (int i = 0; i < segmentCount; i++) {
+            long segmentWeight = maxWeight / segmentCount + (i < maxWeight % segmentCount ? 1 : 0);
+            segments[i] = new Segment(segmentWeight);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Object get(String key) {
+        Node node = nodes.get(key);
+
+        if (node == null) {
+            return null;
+        }
+
+        // avoid writing to a shared cache line when the value is already marked
+        if (!node.accessed) {
+            node.accessed = true;
+        }
+
+        return node.value;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Rejects values heavier than the capacity of the key's segment, see {@link #maxValueWeight()}.
+     */
+    @Override public boolean put(String key, Object value) {
+        int weight = weigher != null ? weigher.weigh(key, value) : 1;
+
+        if (weight < 0) {
+            throw new IllegalStateException(String.format("Negative weight: %s=%s", key, value));
+        }
+
+        return segmentFor(key).put(key, value, weight);
+    }
+
+    /**
+     * Max weight of a value the cache accepts, the capacity of its smallest segment.
+     *
+     * @return max weight of a value
+     */
+    public long maxValueWeight() {
+        return segments[segments.length - 1].maxWeight;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void remove(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public List<String> keys() {
+        return new ArrayList<>(nodes.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void trim(double fraction) {
+        for (Segment segment : segments) {
+            segment.trim(fraction);
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & segmentMask];
+    }
+
+    private static final class Node {
+        private final String key;
+        private final Object value;
+        private final int weight;
+
+        // set by reads, cleared by the clock hand
+        private volatile boolean accessed;
+
+        // guarded by the segment lock
+        private boolean removed;
+
+        Node(String key, Object value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final class Segment {
+        private final long maxWeight;
+
+        // nodes in clock order, may hold removed nodes until the hand passes them
+        private final ArrayDeque<Node> clock;
+
+        private long weight;
+        private int count;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.clock = new ArrayDeque<>();
+        }
+
+        synchronized boolean put(String key, Object value, int nodeWeight) {
+            if (nodeWeight > maxWeight) {
+                remove(key);
+                return false;
+            }
+
+            Node node = new Node(key, value, nodeWeight);
+            unlink(nodes.put(key, node));
+
+            clock.addLast(node);
+            weight += nodeWeight;
+            count++;
+
+            evict(maxWeight, true);
+            compactIfSparse();
+            return true;
+        }
+
+        synchronized void remove(String key) {
+            unlink(nodes.remove(key));
+            compactIfSparse();
+        }
+
+        synchronized void trim(double fraction) {
+            evict((long) (weight * Math.max(0, fraction)), false);
+            compactIfSparse();
+        }
+
+        synchronized void clear() {
+            for (Node node : clock) {
+                if (!node.removed) {
+                    nodes.remove(node.key, node);
+                    node.removed = true;
+                }
+            }
+
+            clock.clear();
+            weight = 0;
+            count = 0;
+        }
+
+        private void evict(long targetWeight, boolean notify) {
+            // bounds second chances to one pass over the clock, even if reads keep marking nodes
+            int secondChances = clock.size();
+
+            while (weight > targetWeight) {
+                Node node = clock.pollFirst();
+
+                if (node.removed) {
+                    continue;
+                }
+
+                if (node.accessed && secondChances-- > 0) {
+                    node.accessed = false;
+                    clock.addLast(node);
+                    continue;
+                }
+
+                nodes.remove(node.key, node);
+                unlink(node);
+
+                if (notify && evictionListener != null) {
+                    evictionListener.onEviction(node.key, node.value);
+                }
+            }
+        }
+
+        private void unlink(Node node) {
+            if (node == null || node.removed) {
+                return;
+            }
+
+            node.removed = true;
+            weight -= node.weight;
+            count--;
+        }
+
+        // drops removed nodes once they make up most of the clock
+        private void compactIfSparse() {
+            int size = clock.size();
+
+            if (size <= 2 * count + MIN_SEGMENT_WEIGHT) {
+                return;
+            }
+
+            for (int i = 0; i < size; i++) {
+                Node node = clock.pollFirst();
+
+                if (!node.removed) {
+                    clock.addLast(node);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+/**
+ * Listener of values evicted from a {@link MemoryCache} to make room for other values.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface EvictionListener {
+
+    /**
+     * Called when a value is evicted. Not called for values that are removed, replaced or cleared.
+     * Called while the memory cache holds a lock, so it should return quickly and not call back into the memory cache.
+     *
+     * @param key key
+     * @param value evicted value
+     */
+    void onEviction(String key, Object value);
+}
@@ -0,0 +1,50 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+/**
+ * Eviction policy of a memory cache.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Evicts approximately the least recently used value, see {@link ConcurrentMemoryCache}.
+     */
+    LRU {
+        @Override public MemoryCache create(int maxWeight, Weigher weigher, EvictionListener evictionListener) {
+            return new ConcurrentMemoryCache(maxWeight, weigher, Runtime.getRuntime().availableProcessors(),
+                    evictionListener);
+        }
+    },
+
+    /**
+     * Window TinyLFU, evicts values by their recent access frequency while protecting new values for a short while,
+     * see {@link TinyLfuMemoryCache}.
+     */
+    TINY_LFU {
+        @Override public MemoryCache create(int maxWeight, Weigher weigher, EvictionListener evictionListener) {
+            return new TinyLfuMemoryCache(maxWeight, weigher, evictionListener);
+        }
+    };
+
+    /**
+     * Creates a memory cache with this eviction policy.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     * @return memory cache
+     */
+    public MemoryCache create(int maxWeight, Weigher weigher) {
+        return create(maxWeight, weigher, null);
+    }
+
+    /**
+     * Creates a memory cache with this eviction policy.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     * @param evictionListener listener of evicted values, <tt>null</tt> if none
+     * @return memory cache
+     */
+    public abstract MemoryCache create(int maxWeight, Weigher weigher, EvictionListener evictionListener);
+}
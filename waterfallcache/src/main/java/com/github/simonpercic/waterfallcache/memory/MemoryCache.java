@@ -0,0 +1,57 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import java.util.List;
+
+/**
+ * Bounded in-memory cache, used as the inline memory cache of
+ * {@link com.github.simonpercic.waterfallcache.WaterfallCache}. Implementations must be thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface MemoryCache {
+
+    /**
+     * Get from cache.
+     *
+     * @param key key
+     * @return cache value or <tt>null</tt> if the cache does not contain it
+     */
+    Object get(String key);
+
+    /**
+     * Put value to cache, evicting other values if the cache is full. A value the cache can not hold, e.g. one heavier
+     * than its capacity, is not cached, the previous value of the key is removed then.
+     *
+     * @param key key
+     * @param value value
+     * @return <tt>true</tt> if the value was cached, <tt>false</tt> if it was rejected
+     */
+    boolean put(String key, Object value);
+
+    /**
+     * Remove cache value.
+     *
+     * @param key key
+     */
+    void remove(String key);
+
+    /**
+     * Clear all cache values.
+     */
+    void clear();
+
+    /**
+     * Keys of all cache values, a snapshot that is not updated by later changes.
+     *
+     * @return keys
+     */
+    List<String> keys();
+
+    /**
+     * Shrink the cache under memory pressure, evicting values until their total weight is at most the given fraction
+     * of what it was. Values are evicted in eviction policy order, but eviction listeners are not notified.
+     *
+     * @param fraction fraction of the current weight to keep, between 0 to clear all values and 1 to keep all values
+     */
+    void trim(double fraction);
+}
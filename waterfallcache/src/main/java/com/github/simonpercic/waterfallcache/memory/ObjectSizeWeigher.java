@@ -0,0 +1,203 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Weigher that estimates the number of bytes an entry retains.
+ * Walks the value's object graph, adding up the estimated shallow sizes of all objects reachable from it. Strings,
+ * arrays, collections and maps are sized without reflection, other objects by their declared fields. Objects
+ * reachable more than once are counted once, classes and enum constants are not counted, as they are shared.
+ * The estimate assumes 4 byte references and 8 byte aligned objects, the actual size depends on the runtime.
+ * Walking stops after a max number of objects, values should not reference large shared object graphs.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class ObjectSizeWeigher implements Weigher {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    // estimated overhead of a cache entry, e.g. a LinkedHashMap entry
+    private static final int ENTRY_OVERHEAD = 40;
+
+    // estimated overhead of a collection element, e.g. a HashMap node
+    private static final int ELEMENT_OVERHEAD = 32;
+
+    // max number of objects walked per entry
+    private static final int MAX_OBJECTS = 100000;
+
+    // sizes and reference fields of classes, per class
+    private final Map<Class<?>, ClassLayout> layouts;
+
+    /**
+     * Object size weigher.
+     */
+    public ObjectSizeWeigher() {
+        this.layouts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public int weigh(String key, Object value) {
+        long size = ENTRY_OVERHEAD + stringSize(key) + sizeOf(value);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private long sizeOf(Object root) {
+        IdentityHashMap<Object, Boolean> visited = new IdentityHashMap<>();
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        long size = 0;
+
+        while (!pending.isEmpty() && visited.size() < MAX_OBJECTS) {
+            Object object = pending.pop();
+
+            if (visited.put(object, Boolean.TRUE) != null) {
+                continue;
+            }
+
+            Class<?> type = object.getClass();
+
+            if (object instanceof String) {
+                size += stringSize((String) object);
+            } else if (object instanceof Class || object instanceof Enum) {
+                continue;
+            } else if (type.isArray()) {
+                size += arraySize(object, type.getComponentType(), pending);
+            } else if (object instanceof Collection) {
+                Collection<?> collection = (Collection<?>) object;
+                size += align(OBJECT_HEADER + 4 * REFERENCE) + (long) collection.size() * ELEMENT_OVERHEAD;
+
+                for (Object element : collection) {
+                    push(pending, element);
+                }
+            } else if (object instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) object;
+                size += align(OBJECT_HEADER + 4 * REFERENCE) + (long) map.size() * ELEMENT_OVERHEAD;
+
+                for (Entry<?, ?> entry : map.entrySet()) {
+                    push(pending, entry.getKey());
+                    push(pending, entry.getValue());
+                }
+            } else {
+                size += fieldsSize(object, layout(type), pending);
+            }
+        }
+
+        return size;
+    }
+
+    private static long fieldsSize(Object object, ClassLayout layout, ArrayDeque<Object> pending) {
+        for (int i = 0; i < layout.references.size(); i++) {
+            try {
+                push(pending, layout.references.get(i).get(object));
+            } catch (IllegalAccessException ignored) {
+                // counted as a reference only
+            }
+        }
+
+        return layout.shallowSize;
+    }
+
+    private static long arraySize(Object array, Class<?> componentType, ArrayDeque<Object> pending) {
+        if (!componentType.isPrimitive()) {
+            Object[] objects = (Object[]) array;
+
+            for (Object element : objects) {
+                push(pending, element);
+            }
+
+            return align(ARRAY_HEADER + (long) objects.length * REFERENCE);
+        }
+
+        int length = Array.getLength(array);
+        return align(ARRAY_HEADER + (long) length * primitiveSize(componentType));
+    }
+
+    private ClassLayout layout(Class<?> type) {
+        ClassLayout layout = layouts.get(type);
+
+        if (layout == null) {
+            layout = new ClassLayout(type);
+            layouts.put(type, layout);
+        }
+
+        return layout;
+    }
+
+    private static void push(ArrayDeque<Object> pending, Object object) {
+        if (object != null) {
+            pending.push(object);
+        }
+    }
+
+    private static long stringSize(String value) {
+        return align(OBJECT_HEADER + 2 * 4) + align(ARRAY_HEADER + 2L * value.length());
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        }
+
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static final class ClassLayout {
+        private final long shallowSize;
+        private final List<Field> references;
+
+        ClassLayout(Class<?> type) {
+            long fieldsSize = 0;
+            List<Field> referenceFields = new ArrayList<>();
+
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+
+                    Class<?> fieldType = field.getType();
+
+                    if (fieldType.isPrimitive()) {
+                        fieldsSize += primitiveSize(fieldType);
+                        continue;
+                    }
+
+                    fieldsSize += REFERENCE;
+
+                    try {
+                        field.setAccessible(true);
+                        referenceFields.add(field);
+                    } catch (RuntimeException ignored) {
+                        // inaccessible field, counted as a reference only
+                    }
+                }
+            }
+
+            this.shallowSize = align(OBJECT_HEADER + fieldsSize);
+            this.references = referenceFields;
+        }
+    }
+}
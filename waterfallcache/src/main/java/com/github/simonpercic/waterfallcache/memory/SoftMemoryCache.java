@@ -0,0 +1,140 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory cache that holds values by soft references.
+ * Not bounded by size: the garbage collector reclaims values once the heap runs low, before it would run out of
+ * memory. Entries of reclaimed values are dropped on later writes. Counts its hits and misses. Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class SoftMemoryCache implements MemoryCache {
+
+    // softly referenced values, by key
+    private final ConcurrentHashMap<String, SoftValue> values;
+
+    // receives the references of reclaimed values
+    private final ReferenceQueue<Object> reclaimed;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+
+    /**
+     * Soft memory cache.
+     */
+    public SoftMemoryCache() {
+        this.values = new ConcurrentHashMap<>();
+        this.reclaimed = new ReferenceQueue<>();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Object get(String key) {
+        SoftValue reference = values.get(key);
+        Object value = reference != null ? reference.get() : null;
+
+        if (value != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean put(String key, Object value) {
+        purgeReclaimed();
+        values.put(key, new SoftValue(key, value, reclaimed));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void remove(String key) {
+        purgeReclaimed();
+        values.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void clear() {
+        values.clear();
+        purgeReclaimed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public List<String> keys() {
+        purgeReclaimed();
+        return new ArrayList<>(values.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Values are not weighed, values are removed in no particular order until their number is at most the fraction.
+     */
+    @Override public void trim(double fraction) {
+        purgeReclaimed();
+
+        int remove = values.size() - (int) (values.size() * Math.max(0, fraction));
+        Iterator<String> keys = values.keySet().iterator();
+
+        while (remove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * Number of gets that found their value.
+     *
+     * @return hit count
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Number of gets that did not find their value, including values that were reclaimed.
+     *
+     * @return miss count
+     */
+    public long missCount() {
+        return missCount.get();
+    }
+
+    private void purgeReclaimed() {
+        Reference<?> reference;
+
+        while ((reference = reclaimed.poll()) != null) {
+            SoftValue value = (SoftValue) reference;
+            values.remove(value.key, value);
+        }
+    }
+
+    private static final class SoftValue extends SoftReference<Object> {
+        private final String key;
+
+        SoftValue(String key, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
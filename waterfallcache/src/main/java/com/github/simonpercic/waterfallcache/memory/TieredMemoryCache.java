@@ -0,0 +1,96 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Memory cache with an overflow tier.
+ * Values evicted from the bounded memory cache are moved to the overflow tier, which is checked when the bounded
+ * memory cache misses. Values found in the overflow tier stay there, they are moved back to the bounded memory cache
+ * only when put again. Values the bounded memory cache rejects are put to the overflow tier. Thread safe if both tiers
+ * are.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class TieredMemoryCache implements MemoryCache {
+
+    // bounded memory cache, evicting to the overflow tier
+    private final MemoryCache cache;
+
+    // holds values evicted from the bounded memory cache
+    private final MemoryCache overflow;
+
+    /**
+     * Tiered memory cache.
+     *
+     * @param policy eviction policy of the bounded memory cache
+     * @param maxWeight max total weight of values in the bounded memory cache
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     * @param overflow overflow tier, e.g. a {@link SoftMemoryCache}
+     */
+    public TieredMemoryCache(EvictionPolicy policy, int maxWeight, Weigher weigher, MemoryCache overflow) {
+        this.cache = policy.create(maxWeight, weigher, overflow::put);
+        this.overflow = overflow;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Object get(String key) {
+        Object value = cache.get(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        return overflow.get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean put(String key, Object value) {
+        if (cache.put(key, value)) {
+            overflow.remove(key);
+            return true;
+        }
+
+        return overflow.put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void remove(String key) {
+        cache.remove(key);
+        overflow.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void clear() {
+        cache.clear();
+        overflow.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public List<String> keys() {
+        Set<String> keys = new LinkedHashSet<>(cache.keys());
+        keys.addAll(overflow.keys());
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Trims both tiers, values trimmed from the bounded memory cache do not move to the overflow tier.
+     */
+    @Override public void trim(double fraction) {
+        cache.trim(fraction);
+        overflow.trim(fraction);
+    }
+}
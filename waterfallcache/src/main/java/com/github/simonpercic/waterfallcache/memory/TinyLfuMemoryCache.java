@@ -0,0 +1,492 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import com.github.simonpercic.waterfallcache.admission.FrequencySketch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Memory cache with a Window TinyLFU eviction policy.
+ * New values enter a small LRU window, which lets values that are accessed in bursts build up frequency. Values
+ * evicted from the window compete with the least recently used value of the main space for a place in it, the value
+ * accessed more often recently, as estimated by a {@link FrequencySketch}, stays. The main space is a segmented LRU:
+ * values accessed again while in its probation segment are moved to its protected segment.
+ * Resists scans, which pure LRU does not, while adapting to recency like LRU.
+ * Reads take no lock: they look the value up in a concurrent map and record the access in one of several read
+ * buffers, chosen by the reading thread. A read that fills a buffer up to a threshold applies the recorded accesses to
+ * the policy, but only if no other thread holds the lock, it does not wait for it. Writes take the lock and apply the
+ * recorded accesses first. A buffer that is full drops further accesses until it is drained, so under heavy
+ * contention the policy sees a sample of the reads. Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class TinyLfuMemoryCache implements MemoryCache {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    // share of the capacity taken by the window
+    private static final double WINDOW_RATIO = 0.01;
+
+    // share of the main space taken by the protected segment
+    private static final double PROTECTED_RATIO = 0.8;
+
+    // max number of keys the frequency sketch is sized for
+    private static final int MAX_SKETCH_SIZE = 1 << 16;
+
+    // max number of read buffers, fewer are used on devices with fewer processors
+    private static final int MAX_READ_BUFFERS = 16;
+
+    // values, by key
+    private final ConcurrentHashMap<String, Node> nodes;
+
+    // guards the policy: the segments, the frequency sketch and the weights
+    private final ReentrantLock lock;
+
+    // accesses not yet applied to the policy, by reading thread
+    private final ReadBuffer[] readBuffers;
+
+    // mask of a read buffer index
+    private final int readBufferMask;
+
+    // recent access frequencies of keys
+    private final FrequencySketch sketch;
+
+    // weigher of values, null to count values
+    private final Weigher weigher;
+
+    // listener of evicted values, null if none
+    private final EvictionListener evictionListener;
+
+    // max total weight of values
+    private final long maxWeight;
+
+    // max weight of the window
+    private final long maxWindowWeight;
+
+    // max weight of the protected segment
+    private final long maxProtectedWeight;
+
+    // segments, from least to most recently used
+    private final Queue window;
+    private final Queue probation;
+    private final Queue protectedQueue;
+
+    // total weight of values
+    private long weight;
+
+    /**
+     * Window TinyLFU memory cache, bounded by the number of values.
+     *
+     * @param maxSize max number of values
+     */
+    public TinyLfuMemoryCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Window TinyLFU memory cache, bounded by the total weight of values. The frequency sketch is sized as if each
+     * value weighed 1, up to a limit, since the number of values the cache holds is not known upfront.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     */
+    public TinyLfuMemoryCache(int maxWeight, Weigher weigher) {
+        this(maxWeight, weigher, null);
+    }
+
+    /**
+     * Window TinyLFU memory cache, bounded by the total weight of values.
+     *
+     * @param maxWeight max total weight of values
+     * @param weigher weigher of values, <tt>null</tt> to count values
+     * @param evictionListener listener of evicted values, <tt>null</tt> if none
+     */
+    public TinyLfuMemoryCache(int maxWeight, Weigher weigher, EvictionListener evictionListener) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight <= 0");
+        }
+
+        // a read buffer per processor, rounded up to a power of two
+        int processors = Runtime.getRuntime().availableProcessors();
+        int readBufferCount = Math.min(Integer.highestOneBit(processors * 2 - 1), MAX_READ_BUFFERS);
+
+        this.nodes = new ConcurrentHashMap<>();
+        this.lock = new ReentrantLock();
+        this.readBuffers = new ReadBuffer[readBufferCount];
+        this.readBufferMask = readBufferCount - 1;
+        this.sketch = new FrequencySketch(Math.min(maxWeight, MAX_SKETCH_SIZE));
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+        this.maxWeight = maxWeight;
+        this.maxWindowWeight = Math.max(1, (long) (maxWeight * WINDOW_RATIO));
+        this.maxProtectedWeight = (long) ((maxWeight - maxWindowWeight) * PROTECTED_RATIO);
+        this.window = new Queue();
+        this.probation = new Queue();
+        this.protectedQueue = new Queue();
+
+        for (int i = 0; i < readBufferCount; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Object get(String key) {
+        Node node = nodes.get(key);
+
+        ReadBuffer readBuffer = readBuffers[(int) Thread.currentThread().getId() & readBufferMask];
+
+        if (readBuffer.offer(key) && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean put(String key, Object value) {
+        int nodeWeight = weigher != null ? weigher.weigh(key, value) : 1;
+
+        if (nodeWeight < 0) {
+            throw new IllegalStateException(String.format("Negative weight: %s=%s", key, value));
+        }
+
+        lock.lock();
+
+        try {
+            drainReadBuffers();
+            return putLocked(key, value, nodeWeight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean putLocked(String key, Object value, int nodeWeight) {
+        Node node = nodes.get(key);
+
+        if (nodeWeight > maxWeight) {
+            if (node != null) {
+                removeNode(node);
+            }
+
+            return false;
+        }
+
+        if (node != null) {
+            node.value = value;
+            weight += nodeWeight - node.weight;
+
+            if (node.queue == PROTECTED) {
+                protectedQueue.weight += nodeWeight - node.weight;
+            } else if (node.queue == WINDOW) {
+                window.weight += nodeWeight - node.weight;
+            } else {
+                probation.weight += nodeWeight - node.weight;
+            }
+
+            node.weight = nodeWeight;
+            onAccess(node);
+        } else {
+            node = new Node(key, value, nodeWeight);
+            nodes.put(key, node);
+            weight += nodeWeight;
+            window.addLast(node);
+            node.queue = WINDOW;
+        }
+
+        evict();
+
+        // the new value may lose against the eviction candidates and be evicted right away
+        return nodes.get(key) == node;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void remove(String key) {
+        lock.lock();
+
+        try {
+            drainReadBuffers();
+
+            Node node = nodes.get(key);
+
+            if (node != null) {
+                removeNode(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void clear() {
+        lock.lock();
+
+        try {
+            drainReadBuffers();
+
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public List<String> keys() {
+        return new ArrayList<>(nodes.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void trim(double fraction) {
+        lock.lock();
+
+        try {
+            drainReadBuffers();
+
+            long targetWeight = (long) (weight * Math.max(0, fraction));
+
+            while (weight > targetWeight) {
+                removeNode(nextVictim());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // applies the accesses recorded by reads to the policy, guarded by the lock
+    private void drainReadBuffers() {
+        for (ReadBuffer readBuffer : readBuffers) {
+            String key;
+
+            while ((key = readBuffer.poll()) != null) {
+                sketch.increment(key);
+
+                Node node = nodes.get(key);
+
+                if (node != null) {
+                    onAccess(node);
+                }
+            }
+        }
+    }
+
+    private void onAccess(Node node) {
+        if (node.queue == WINDOW) {
+            window.moveToLast(node);
+        } else if (node.queue == PROTECTED) {
+            protectedQueue.moveToLast(node);
+        } else {
+            probation.remove(node);
+            protectedQueue.addLast(node);
+            node.queue = PROTECTED;
+
+            while (protectedQueue.weight > maxProtectedWeight && protectedQueue.head != node) {
+                Node demoted = protectedQueue.head;
+                protectedQueue.remove(demoted);
+                probation.addLast(demoted);
+                demoted.queue = PROBATION;
+            }
+        }
+    }
+
+    private void evict() {
+        while (window.weight > maxWindowWeight && window.head != null) {
+            Node candidate = window.head;
+            window.remove(candidate);
+            probation.addLast(candidate);
+            candidate.queue = PROBATION;
+
+            admitOrEvict(candidate);
+        }
+
+        while (weight > maxWeight) {
+            evictNode(nextVictim());
+        }
+    }
+
+    private Node nextVictim() {
+        return probation.head != null ? probation.head
+                : protectedQueue.head != null ? protectedQueue.head : window.head;
+    }
+
+    // evicts either the candidate or the least recently used values of the main space, until the cache fits
+    private void admitOrEvict(Node candidate) {
+        while (weight > maxWeight) {
+            Node victim = probation.head != candidate ? probation.head : protectedQueue.head;
+
+            if (victim == null || victim == candidate) {
+                return;
+            }
+
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                evictNode(candidate);
+                return;
+            }
+        }
+    }
+
+    private void evictNode(Node node) {
+        removeNode(node);
+
+        if (evictionListener != null) {
+            evictionListener.onEviction(node.key, node.value);
+        }
+    }
+
+    private void removeNode(Node node) {
+        nodes.remove(node.key);
+        weight -= node.weight;
+
+        if (node.queue == WINDOW) {
+            window.remove(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else {
+            protectedQueue.remove(node);
+        }
+    }
+
+    private static final class Node {
+        private final String key;
+
+        // read without the lock
+        private volatile Object value;
+
+        private int weight;
+        private int queue;
+
+        private Node prev;
+        private Node next;
+
+        Node(String key, Object value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    // bounded buffer of read keys, written by any thread, drained by the thread holding the lock
+    private static final class ReadBuffer {
+        private static final int SIZE = 64;
+        private static final int MASK = SIZE - 1;
+
+        // number of buffered keys at which the reader tries to drain the buffers
+        private static final int DRAIN_THRESHOLD = SIZE / 2;
+
+        private final AtomicReferenceArray<String> keys = new AtomicReferenceArray<>(SIZE);
+
+        // number of keys written, a slot is claimed before its key is set
+        private final AtomicInteger writeCount = new AtomicInteger();
+
+        // number of keys drained, written with the lock held
+        private volatile int readCount;
+
+        // records the key unless the buffer is full or another reader claimed the slot, returns whether to drain
+        boolean offer(String key) {
+            int count = writeCount.get();
+            int buffered = count - readCount;
+
+            if (buffered >= SIZE) {
+                return true;
+            }
+
+            if (writeCount.compareAndSet(count, count + 1)) {
+                keys.lazySet(count & MASK, key);
+                buffered++;
+            }
+
+            return buffered >= DRAIN_THRESHOLD;
+        }
+
+        // takes the next key, null if there is none or its reader has not set it yet
+        String poll() {
+            int index = readCount & MASK;
+            String key = keys.get(index);
+
+            if (key != null) {
+                keys.lazySet(index, null);
+                readCount++;
+            }
+
+            return key;
+        }
+    }
+
+    // doubly linked list of nodes, from least to most recently used
+    private static final class Queue {
+        private Node head;
+        private Node tail;
+        private long weight;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node node) {
+            if (tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+}
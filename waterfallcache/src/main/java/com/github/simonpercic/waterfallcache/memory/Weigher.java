@@ -0,0 +1,18 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+/**
+ * Calculates the weight of a memory cache entry, e.g. its approximate size in bytes.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface Weigher {
+
+    /**
+     * Weight of the cache entry. Must not change while the entry is cached.
+     *
+     * @param key key
+     * @param value value
+     * @return weight, not negative
+     */
+    int weigh(String key, Object value);
+}
@@ -0,0 +1,164 @@
+package com.github.simonpercic.waterfallcache.offheap;
+
+/**
+ * Open addressing hash table of 64 bit key hashes to chunk addresses, kept in primitive arrays.
+ * Costs 16 bytes per slot, instead of a key String, a map entry and boxed values per entry. Slots are probed
+ * linearly, removal shifts the following slots back instead of leaving tombstones. Different keys may share a hash,
+ * so the owner verifies the keys of all slots with the hash it looks up. Not thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class HashIndex {
+
+    // marks an empty slot, hashes are never 0
+    private static final long EMPTY = 0;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // key hashes, by slot
+    private long[] hashes;
+
+    // chunk addresses, by slot
+    private long[] addresses;
+
+    // mask of a slot index
+    private int mask;
+
+    // number of occupied slots
+    private int size;
+
+    HashIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Hash of a key, never 0.
+     *
+     * @param key key bytes
+     * @return 64 bit hash
+     */
+    static long hash(byte[] key) {
+        // FNV-1a, finalized with the MurmurHash3 mix to spread the bits
+        long hash = 0xcbf29ce484222325L;
+
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash != EMPTY ? hash : 1;
+    }
+
+    /**
+     * First slot to probe for the hash. Probe the following slots with {@link #next(int)} until an empty one.
+     *
+     * @param hash key hash
+     * @return slot
+     */
+    int first(long hash) {
+        return (int) hash & mask;
+    }
+
+    int next(int slot) {
+        return (slot + 1) & mask;
+    }
+
+    boolean isEmpty(int slot) {
+        return hashes[slot] == EMPTY;
+    }
+
+    long hashAt(int slot) {
+        return hashes[slot];
+    }
+
+    long addressAt(int slot) {
+        return addresses[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return hashes.length;
+    }
+
+    /**
+     * Insert a hash and address, growing the table once three quarters full. Invalidates slots.
+     *
+     * @param hash key hash
+     * @param address chunk address
+     */
+    void insert(long hash, long address) {
+        if ((size + 1) * 4L > hashes.length * 3L) {
+            grow();
+        }
+
+        int slot = first(hash);
+
+        while (!isEmpty(slot)) {
+            slot = next(slot);
+        }
+
+        hashes[slot] = hash;
+        addresses[slot] = address;
+        size++;
+    }
+
+    /**
+     * Remove the slot, shifting back following slots that would otherwise no longer be reached. Invalidates slots.
+     *
+     * @param slot slot
+     */
+    void remove(int slot) {
+        int gap = slot;
+        int current = next(slot);
+
+        while (!isEmpty(current)) {
+            int home = first(hashes[current]);
+
+            // move into the gap, unless the home slot lies cyclically after the gap, up to the current slot
+            if (((current - home) & mask) >= ((current - gap) & mask)) {
+                hashes[gap] = hashes[current];
+                addresses[gap] = addresses[current];
+                gap = current;
+            }
+
+            current = next(current);
+        }
+
+        hashes[gap] = EMPTY;
+        addresses[gap] = 0;
+        size--;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        long[] oldAddresses = addresses;
+
+        allocate(oldHashes.length * 2);
+
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY) {
+                insert(oldHashes[i], oldAddresses[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        addresses = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+}
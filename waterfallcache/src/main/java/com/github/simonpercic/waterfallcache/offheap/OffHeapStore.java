@@ -0,0 +1,272 @@
+package com.github.simonpercic.waterfallcache.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte store outside of the Java heap.
+ * Values are written to chunks of direct memory, handed out by a slab allocator, so that the garbage collector does
+ * not scan them. Each chunk holds the key next to the value, the on-heap index only maps 64 bit key hashes to chunks,
+ * in primitive arrays, see {@link HashIndex}. Lookups verify the key stored in the chunk, so keys with colliding
+ * hashes are told apart. When a size class has no free chunks left and all memory is allocated, either its values are
+ * evicted in approximately least recently used order, or a slab not used recently is taken from another size class,
+ * evicting all values of that slab. Slabs move between size classes that way as the mix of value sizes changes.
+ * Thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class OffHeapStore {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // chunk layout: key hash, key length, value length, key bytes, value bytes
+    private static final int HASH_OFFSET = 0;
+    private static final int KEY_LENGTH_OFFSET = 8;
+    private static final int VALUE_LENGTH_OFFSET = 12;
+    private static final int HEADER_SIZE = 16;
+
+    // allocator of chunks
+    private final SlabAllocator allocator;
+
+    // chunk addresses, by key hash
+    private final HashIndex index;
+
+    /**
+     * Off-heap store.
+     *
+     * @param maxBytes max bytes of direct memory to allocate
+     * @param slabSize size of a slab in bytes, direct memory is allocated a slab at a time, also the max size of a
+     * stored key and value
+     */
+    public OffHeapStore(long maxBytes, int slabSize) {
+        this.allocator = new SlabAllocator(maxBytes, slabSize);
+        this.index = new HashIndex();
+    }
+
+    /**
+     * Get bytes.
+     *
+     * @param key key
+     * @return copy of the stored bytes, <tt>null</tt> if the store does not contain them
+     */
+    public synchronized byte[] get(String key) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int slot = find(HashIndex.hash(keyBytes), keyBytes);
+
+        if (slot < 0) {
+            return null;
+        }
+
+        long address = index.addressAt(slot);
+        allocator.markReferenced(address);
+
+        ByteBuffer slab = allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+
+        byte[] bytes = new byte[slab.getInt(offset + VALUE_LENGTH_OFFSET)];
+        slab.position(offset + HEADER_SIZE + keyBytes.length);
+        slab.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Put bytes, evicting other values if needed.
+     *
+     * @param key key
+     * @param bytes bytes
+     * @return <tt>true</tt> if stored, <tt>false</tt> if the key and bytes are larger than a slab
+     */
+    public synchronized boolean put(String key, byte[] bytes) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        long hash = HashIndex.hash(keyBytes);
+
+        removeSlot(find(hash, keyBytes));
+
+        int sizeClass = allocator.sizeClass(HEADER_SIZE + keyBytes.length + bytes.length);
+
+        if (sizeClass < 0) {
+            return false;
+        }
+
+        long address = allocator.allocate(sizeClass);
+
+        while (address < 0) {
+            int victimSlab = allocator.victimSlab();
+
+            if (victimSlab < 0) {
+                return false;
+            }
+
+            if (allocator.slabClass(victimSlab) == sizeClass) {
+                long victim = allocator.victim(sizeClass);
+
+                if (victim < 0) {
+                    return false;
+                }
+
+                removeSlot(findAddress(victim));
+            } else {
+                removeSlab(victimSlab);
+                allocator.reassign(victimSlab, sizeClass);
+            }
+
+            address = allocator.allocate(sizeClass);
+        }
+
+        ByteBuffer slab = allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+
+        slab.putLong(offset + HASH_OFFSET, hash);
+        slab.putInt(offset + KEY_LENGTH_OFFSET, keyBytes.length);
+        slab.putInt(offset + VALUE_LENGTH_OFFSET, bytes.length);
+        slab.position(offset + HEADER_SIZE);
+        slab.put(keyBytes);
+        slab.put(bytes);
+
+        index.insert(hash, address);
+        return true;
+    }
+
+    /**
+     * Whether the store contains the key.
+     *
+     * @param key key
+     * @return <tt>true</tt> if it contains the key
+     */
+    public synchronized boolean contains(String key) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        return find(HashIndex.hash(keyBytes), keyBytes) >= 0;
+    }
+
+    /**
+     * Remove bytes.
+     *
+     * @param key key
+     */
+    public synchronized void remove(String key) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        removeSlot(find(HashIndex.hash(keyBytes), keyBytes));
+    }
+
+    /**
+     * Keys of all stored bytes, read from their chunks.
+     *
+     * @return keys
+     */
+    public synchronized List<String> keys() {
+        List<String> keys = new ArrayList<>(index.size());
+
+        for (int slot = 0; slot < index.capacity(); slot++) {
+            if (!index.isEmpty(slot)) {
+                keys.add(keyAt(index.addressAt(slot)));
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Remove all bytes. Allocated direct memory is kept, to be reused.
+     */
+    public synchronized void clear() {
+        index.clear();
+        allocator.clear();
+    }
+
+    /**
+     * Release direct memory under memory pressure. Values share slabs of direct memory, so memory is released a slab
+     * at a time: the most recently allocated slabs are released, together with their values, until at most the given
+     * fraction of slabs is left.
+     *
+     * @param fraction fraction of the allocated slabs to keep, between 0 to release all slabs and 1 to keep all slabs
+     */
+    public synchronized void trim(double fraction) {
+        int keep = (int) (allocator.slabCount() * Math.max(0, fraction));
+
+        while (allocator.slabCount() > keep) {
+            removeSlab(allocator.slabCount() - 1);
+            allocator.releaseLastSlab();
+        }
+    }
+
+    /**
+     * Number of stored values.
+     *
+     * @return size
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    // slot of the key, -1 if not found
+    private int find(long hash, byte[] keyBytes) {
+        for (int slot = index.first(hash); !index.isEmpty(slot); slot = index.next(slot)) {
+            if (index.hashAt(slot) == hash && keyEquals(index.addressAt(slot), keyBytes)) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    // slot of the chunk, -1 if not found
+    private int findAddress(long address) {
+        long hash = allocator.slab(address).getLong(SlabAllocator.offset(address) + HASH_OFFSET);
+
+        for (int slot = index.first(hash); !index.isEmpty(slot); slot = index.next(slot)) {
+            if (index.addressAt(slot) == address) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private String keyAt(long address) {
+        ByteBuffer slab = allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+
+        byte[] keyBytes = new byte[slab.getInt(offset + KEY_LENGTH_OFFSET)];
+        slab.position(offset + HEADER_SIZE);
+        slab.get(keyBytes);
+        return new String(keyBytes, UTF_8);
+    }
+
+    private boolean keyEquals(long address, byte[] keyBytes) {
+        ByteBuffer slab = allocator.slab(address);
+        int offset = SlabAllocator.offset(address);
+
+        if (slab.getInt(offset + KEY_LENGTH_OFFSET) != keyBytes.length) {
+            return false;
+        }
+
+        int keyOffset = offset + HEADER_SIZE;
+
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (slab.get(keyOffset + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // removes all values of a slab
+    private void removeSlab(int slabIndex) {
+        for (long address : allocator.slabChunks(slabIndex)) {
+            removeSlot(findAddress(address));
+        }
+    }
+
+    private void removeSlot(int slot) {
+        if (slot < 0) {
+            return;
+        }
+
+        long address = index.addressAt(slot);
+        index.remove(slot);
+        allocator.free(address);
+    }
+}
@@ -0,0 +1,430 @@
+package com.github.simonpercic.waterfallcache.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocator of chunks of direct memory.
+ * Memory is allocated in slabs of a fixed size, as direct ByteBuffers outside of the Java heap. Each slab is assigned
+ * to a size class when first needed and cut into equally sized chunks of that class, chunk sizes grow by a constant
+ * factor from class to class. A chunk is addressed by its slab index in the high 32 bits and its offset in the low
+ * 32 bits. Once all slabs are allocated, a slab can be reassigned to another size class, so that memory follows a
+ * changing mix of value sizes.
+ * Chunks of a size class are picked for eviction with the CLOCK algorithm: a chunk that was marked as referenced since
+ * the clock hand last passed it gets a second chance. Slabs to reassign are picked the same way, by a clock over all
+ * slabs: a slab with a chunk marked as referenced since the hand last passed it gets a second chance. Not thread safe.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+final class SlabAllocator {
+
+    // size of the smallest chunk
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    // ratio of chunk sizes of neighbouring size classes
+    private static final double GROWTH_FACTOR = 1.25;
+
+    // states of a chunk
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final byte REFERENCED = 2;
+
+    // size of a slab
+    private final int slabSize;
+
+    // max number of slabs
+    private final int maxSlabs;
+
+    // chunk size of each size class, ascending
+    private final int[] chunkSizes;
+
+    // addresses of free chunks, per size class
+    private final LongStack[] freeChunks;
+
+    // slab indexes, per size class
+    private final List<List<Integer>> classSlabs;
+
+    // clock hand of each size class, as the position in its slabs and the chunk index in that slab
+    private final int[] handSlabs;
+    private final int[] handChunks;
+
+    // allocated slabs
+    private final List<ByteBuffer> slabs;
+
+    // size class of each allocated slab
+    private final List<Integer> slabClasses;
+
+    // chunk states of each allocated slab
+    private final List<byte[]> slabStates;
+
+    // whether a chunk of each allocated slab was marked as referenced since the slab clock hand last passed it
+    private final List<Boolean> slabReferenced;
+
+    // slab clock hand, as the slab index
+    private int slabHand;
+
+    /**
+     * Slab allocator.
+     *
+     * @param maxBytes max bytes to allocate, rounded down to whole slabs, at least one slab is allocated
+     * @param slabSize size of a slab in bytes, also the max chunk size
+     */
+    SlabAllocator(long maxBytes, int slabSize) {
+        if (slabSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("slabSize < " + MIN_CHUNK_SIZE);
+        }
+
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.max(1, Math.min(maxBytes / slabSize, Integer.MAX_VALUE));
+        this.chunkSizes = chunkSizes(slabSize);
+        this.freeChunks = new LongStack[chunkSizes.length];
+        this.classSlabs = new ArrayList<>(chunkSizes.length);
+        this.handSlabs = new int[chunkSizes.length];
+        this.handChunks = new int[chunkSizes.length];
+        this.slabs = new ArrayList<>();
+        this.slabClasses = new ArrayList<>();
+        this.slabStates = new ArrayList<>();
+        this.slabReferenced = new ArrayList<>();
+
+        for (int i = 0; i < chunkSizes.length; i++) {
+            freeChunks[i] = new LongStack();
+            classSlabs.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Size class of the smallest chunks that fit the given number of bytes.
+     *
+     * @param length number of bytes
+     * @return size class, -1 if larger than a slab
+     */
+    int sizeClass(int length) {
+        for (int i = 0; i < chunkSizes.length; i++) {
+            if (chunkSizes[i] >= length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Allocate a chunk of the size class, assigning a new slab to the size class if it has no free chunks.
+     *
+     * @param sizeClass size class
+     * @return address of the chunk, -1 if the size class has no free chunks and all slabs are allocated
+     */
+    long allocate(int sizeClass) {
+        LongStack free = freeChunks[sizeClass];
+
+        if (free.isEmpty() && slabs.size() < maxSlabs) {
+            int slabIndex = slabs.size();
+
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            slabClasses.add(sizeClass);
+            slabStates.add(new byte[slabSize / chunkSizes[sizeClass]]);
+            slabReferenced.add(Boolean.TRUE);
+            classSlabs.get(sizeClass).add(slabIndex);
+            freeSlab(slabIndex);
+        }
+
+        if (free.isEmpty()) {
+            return -1;
+        }
+
+        long address = free.pop();
+        setState(address, USED);
+        return address;
+    }
+
+    /**
+     * Free a chunk.
+     *
+     * @param address address of the chunk
+     */
+    void free(long address) {
+        setState(address, FREE);
+        freeChunks[slabClasses.get(slabIndex(address))].push(address);
+    }
+
+    /**
+     * Mark an allocated chunk as referenced, giving it a second chance on eviction.
+     *
+     * @param address address of the chunk
+     */
+    void markReferenced(long address) {
+        setState(address, REFERENCED);
+        slabReferenced.set(slabIndex(address), Boolean.TRUE);
+    }
+
+    /**
+     * Pick an allocated chunk of the size class to evict, advancing the clock hand of the size class.
+     *
+     * @param sizeClass size class
+     * @return address of the chunk, -1 if the size class has no allocated chunks
+     */
+    long victim(int sizeClass) {
+        List<Integer> slabIndexes = classSlabs.get(sizeClass);
+
+        if (slabIndexes.isEmpty()) {
+            return -1;
+        }
+
+        int chunkSize = chunkSizes[sizeClass];
+        int chunksPerSlab = slabSize / chunkSize;
+
+        // two passes: the first may only clear referenced marks
+        long steps = 2L * slabIndexes.size() * chunksPerSlab;
+
+        for (long i = 0; i < steps; i++) {
+            int slabIndex = slabIndexes.get(handSlabs[sizeClass]);
+            int chunk = handChunks[sizeClass];
+
+            if (++handChunks[sizeClass] == chunksPerSlab) {
+                handChunks[sizeClass] = 0;
+                handSlabs[sizeClass] = (handSlabs[sizeClass] + 1) % slabIndexes.size();
+            }
+
+            byte[] states = slabStates.get(slabIndex);
+
+            if (states[chunk] == REFERENCED) {
+                states[chunk] = USED;
+            } else if (states[chunk] == USED) {
+                return ((long) slabIndex << 32) | (chunk * chunkSize);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Pick an allocated slab to reassign to another size class, advancing the slab clock hand.
+     *
+     * @return slab index, -1 if no slabs are allocated
+     */
+    int victimSlab() {
+        int count = slabs.size();
+
+        if (slabHand >= count) {
+            slabHand = 0;
+        }
+
+        // two passes: the first may only clear referenced marks
+        for (int i = 0; i < 2 * count; i++) {
+            int slabIndex = slabHand;
+            slabHand = (slabHand + 1) % count;
+
+            if (slabReferenced.get(slabIndex)) {
+                slabReferenced.set(slabIndex, Boolean.FALSE);
+            } else {
+                return slabIndex;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Size class of an allocated slab.
+     *
+     * @param slabIndex slab index
+     * @return size class
+     */
+    int slabClass(int slabIndex) {
+        return slabClasses.get(slabIndex);
+    }
+
+    /**
+     * Reassign an allocated slab to another size class, cutting it into chunks of that class. All its chunks must be
+     * free.
+     *
+     * @param slabIndex slab index
+     * @param sizeClass size class to assign the slab to
+     */
+    void reassign(int slabIndex, int sizeClass) {
+        unassign(slabIndex);
+
+        slabClasses.set(slabIndex, sizeClass);
+        slabStates.set(slabIndex, new byte[slabSize / chunkSizes[sizeClass]]);
+        slabReferenced.set(slabIndex, Boolean.TRUE);
+        classSlabs.get(sizeClass).add(slabIndex);
+        freeSlab(slabIndex);
+    }
+
+    /**
+     * Free all chunks, slabs stay allocated and assigned to their size classes.
+     */
+    void clear() {
+        for (LongStack free : freeChunks) {
+            free.clear();
+        }
+
+        for (int i = 0; i < slabs.size(); i++) {
+            freeSlab(i);
+            slabReferenced.set(i, Boolean.TRUE);
+        }
+
+        slabHand = 0;
+
+        for (int i = 0; i < chunkSizes.length; i++) {
+            handSlabs[i] = 0;
+            handChunks[i] = 0;
+        }
+    }
+
+    /**
+     * Number of allocated slabs.
+     *
+     * @return slab count
+     */
+    int slabCount() {
+        return slabs.size();
+    }
+
+    /**
+     * Addresses of the allocated chunks of a slab.
+     *
+     * @param slabIndex slab index
+     * @return chunk addresses
+     */
+    List<Long> slabChunks(int slabIndex) {
+        int chunkSize = chunkSizes[slabClasses.get(slabIndex)];
+        byte[] states = slabStates.get(slabIndex);
+
+        List<Long> addresses = new ArrayList<>();
+
+        for (int chunk = 0; chunk < states.length; chunk++) {
+            if (states[chunk] != FREE) {
+                addresses.add(((long) slabIndex << 32) | (chunk * chunkSize));
+            }
+        }
+
+        return addresses;
+    }
+
+    /**
+     * Release the last allocated slab, so that its direct memory can be reclaimed. All its chunks must be free.
+     */
+    void releaseLastSlab() {
+        int slabIndex = slabs.size() - 1;
+
+        unassign(slabIndex);
+
+        slabs.remove(slabIndex);
+        slabClasses.remove(slabIndex);
+        slabStates.remove(slabIndex);
+        slabReferenced.remove(slabIndex);
+    }
+
+    /**
+     * The slab of a chunk, to be accessed at {@link #offset(long)} with absolute gets and puts, or after setting its
+     * position.
+     *
+     * @param address address of the chunk
+     * @return slab
+     */
+    ByteBuffer slab(long address) {
+        return slabs.get(slabIndex(address));
+    }
+
+    /**
+     * Offset of a chunk in its slab.
+     *
+     * @param address address of the chunk
+     * @return offset
+     */
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private void setState(long address, byte state) {
+        int slabIndex = slabIndex(address);
+        int chunkSize = chunkSizes[slabClasses.get(slabIndex)];
+        slabStates.get(slabIndex)[offset(address) / chunkSize] = state;
+    }
+
+    // removes a slab with all chunks free from its size class
+    private void unassign(int slabIndex) {
+        int sizeClass = slabClasses.get(slabIndex);
+
+        freeChunks[sizeClass].removeSlab(slabIndex);
+        classSlabs.get(sizeClass).remove(Integer.valueOf(slabIndex));
+        handSlabs[sizeClass] = 0;
+        handChunks[sizeClass] = 0;
+    }
+
+    private void freeSlab(int slabIndex) {
+        int chunkSize = chunkSizes[slabClasses.get(slabIndex)];
+        LongStack free = freeChunks[slabClasses.get(slabIndex)];
+        byte[] states = slabStates.get(slabIndex);
+
+        // push in reverse, so that chunks are handed out from the start of the slab
+        for (int chunk = states.length - 1; chunk >= 0; chunk--) {
+            states[chunk] = FREE;
+            free.push(((long) slabIndex << 32) | (chunk * chunkSize));
+        }
+    }
+
+    private static int[] chunkSizes(int slabSize) {
+        List<Integer> sizes = new ArrayList<>();
+
+        for (int size = MIN_CHUNK_SIZE; size < slabSize; size = ((int) (size * GROWTH_FACTOR) + 7) & ~7) {
+            sizes.add(size);
+        }
+
+        sizes.add(slabSize);
+
+        int[] chunkSizes = new int[sizes.size()];
+
+        for (int i = 0; i < chunkSizes.length; i++) {
+            chunkSizes[i] = sizes.get(i);
+        }
+
+        return chunkSizes;
+    }
+
+    // growable stack of longs, avoids boxing chunk addresses
+    private static final class LongStack {
+        private long[] values = new long[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(long value) {
+            if (size == values.length) {
+                long[] grown = new long[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+
+            values[size++] = value;
+        }
+
+        long pop() {
+            return values[--size];
+        }
+
+        void removeSlab(int slabIndex) {
+            int kept = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (slabIndex(values[i]) != slabIndex) {
+                    values[kept++] = values[i];
+                }
+            }
+
+            size = kept;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
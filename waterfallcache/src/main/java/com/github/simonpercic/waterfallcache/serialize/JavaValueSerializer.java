@@ -0,0 +1,49 @@
+package com.github.simonpercic.waterfallcache.serialize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Serializer that uses Java serialization, values must implement {@link java.io.Serializable}.
+ * The type of value is not needed to deserialize it, as the serialized form records its class.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class JavaValueSerializer implements ValueSerializer {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(value);
+        output.close();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public <T> T deserialize(byte[] bytes, Type typeOfT) throws IOException {
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+
+        try {
+            // the value was serialized from an instance of the type it is read with
+            @SuppressWarnings("unchecked")
+            T value = (T) input.readObject();
+
+            return value;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.simonpercic.waterfallcache.serialize;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Serializer of cache values, used by cache levels that store values as bytes.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public interface ValueSerializer {
+
+    /**
+     * Serialize value to bytes.
+     *
+     * @param value value
+     * @return serialized value
+     * @throws IOException if the value can not be serialized
+     */
+    byte[] serialize(Object value) throws IOException;
+
+    /**
+     * Deserialize value from bytes.
+     *
+     * @param bytes serialized value
+     * @param typeOfT type of value
+     * @param <T> T of value
+     * @return value
+     * @throws IOException if the value can not be deserialized
+     */
+    <T> T deserialize(byte[] bytes, Type typeOfT) throws IOException;
+}
@@ -0,0 +1,87 @@
+package com.github.simonpercic.waterfallcache.utils;
+
+import com.github.simonpercic.waterfallcache.cache.BatchCache;
+import com.github.simonpercic.waterfallcache.cache.RxCache;
+
+import java.lang.reflect.Type;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import rx.Observable;
+
+/**
+ * Batch operations on any cache.
+ * Uses the cache's own batch operations if it implements {@link BatchCache}, falls back to performing the operation
+ * one key at a time, sequentially, otherwise.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public final class BatchUtils {
+
+    private BatchUtils() {
+        //no instance
+    }
+
+    /**
+     * Get many values from cache.
+     *
+     * @param cache cache
+     * @param keys keys
+     * @param typeOfT type of cache values
+     * @param <T> T of cache values
+     * @return Observable that emits the values found in cache, mapped by their keys
+     */
+    public static <T> Observable<Map<String, T>> getAll(RxCache cache, List<String> keys, Type typeOfT) {
+        if (cache instanceof BatchCache) {
+            return ((BatchCache) cache).getAll(keys, typeOfT);
+        }
+
+        if (keys.isEmpty()) {
+            return Observable.just(Collections.<String, T>emptyMap());
+        }
+
+        return Observable.from(keys)
+                .concatMap(key -> cache.<T>get(key, typeOfT)
+                        .filter(value -> value != null)
+                        .map(value -> new SimpleImmutableEntry<>(key, value)))
+                .toMap(Entry::getKey, Entry::getValue);
+    }
+
+    /**
+     * Put many values to cache.
+     *
+     * @param cache cache
+     * @param values values, mapped by their keys
+     * @return Observable that emits <tt>true</tt> if all were successful, <tt>false</tt> otherwise
+     */
+    public static Observable<Boolean> putAll(RxCache cache, Map<String, ?> values) {
+        if (cache instanceof BatchCache) {
+            return ((BatchCache) cache).putAll(values);
+        }
+
+        return Observable.from(new ArrayList<>(values.entrySet()))
+                .concatMap(entry -> cache.put(entry.getKey(), entry.getValue()))
+                .reduce(true, (allSuccess, success) -> allSuccess && success);
+    }
+
+    /**
+     * Remove many cache values.
+     *
+     * @param cache cache
+     * @param keys keys
+     * @return Observable that emits <tt>true</tt> if all were successful, <tt>false</tt> otherwise
+     */
+    public static Observable<Boolean> removeAll(RxCache cache, List<String> keys) {
+        if (cache instanceof BatchCache) {
+            return ((BatchCache) cache).removeAll(keys);
+        }
+
+        return Observable.from(keys)
+                .concatMap(cache::remove)
+                .reduce(true, (allSuccess, success) -> allSuccess && success);
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.simonpercic.waterfallcache;
+
+import com.github.simonpercic.waterfallcache.cache.MemoryRxCache;
+import com.github.simonpercic.waterfallcache.model.SimpleObject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Allocation tests of walking through cache levels, measured with the bytes the JVM reports as allocated by the current
+ * thread. The walk through the cache levels allocates the same no matter how many cache levels it visits, which is
+ * compared to the chain of nested flatMaps it replaced, rebuilt here as the baseline.
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class WaterfallCacheAllocationTest {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 100000;
+
+    // max bytes a walk allocates per visited cache level, rounding errors of the measurement
+    private static final long MAX_BYTES_PER_LEVEL = 8;
+
+    private static final Action1<Object> NO_OP = value -> {
+    };
+
+    // the same Observable for each level, so that only the allocations of the walk itself are measured
+    private static final Observable<Boolean> LEVEL = Observable.just(true);
+    private static final Func1<Integer, Observable<Boolean>> LEVEL_FN = index -> LEVEL;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testLevelWalkAllocationConstant() throws Exception {
+        int[] levelCounts = {1, 2, 4, 8, 16};
+
+        long[] walkBytes = new long[levelCounts.length];
+
+        for (int i = 0; i < levelCounts.length; i++) {
+            int levelCount = levelCounts[i];
+
+            walkBytes[i] = allocatedBytesPerOp(() -> WaterfallCache.writeSequentially(levelCount, false, LEVEL_FN));
+            long flatMapBytes = allocatedBytesPerOp(() -> nestedFlatMaps(levelCount));
+
+            // a single flatMap is not a walk, the operator itself costs more than the flatMap
+            if (levelCount > 1) {
+                assertTrue(walkBytes[i] <= flatMapBytes);
+            }
+        }
+
+        int last = levelCounts.length - 1;
+        long walkBytesPerLevel = (walkBytes[last] - walkBytes[0]) / (levelCounts[last] - levelCounts[0]);
+
+        // allows for the JIT compiler eliminating a few more allocations of a walk through a single level
+        assertTrue(walkBytesPerLevel < MAX_BYTES_PER_LEVEL);
+    }
+
+    @Test
+    public void testGetMissAllocation() throws Exception {
+        int[] levelCounts = {1, 2, 4, 8};
+
+        long[] bytes = new long[levelCounts.length];
+
+        for (int i = 0; i < levelCounts.length; i++) {
+            WaterfallCache.Builder builder = WaterfallCache.builder()
+                    .withObserveOnScheduler(Schedulers.immediate());
+
+            for (int j = 0; j < levelCounts[i]; j++) {
+                builder.addCache(new MemoryRxCache(10));
+            }
+
+            WaterfallCache cache = builder.build();
+
+            bytes[i] = allocatedBytesPerOp(() -> cache.get("TEST_KEY", SimpleObject.class));
+        }
+
+        MemoryRxCache level = new MemoryRxCache(10);
+        long levelGetBytes = allocatedBytesPerOp(() -> level.get("TEST_KEY", SimpleObject.class));
+
+        int last = levelCounts.length - 1;
+        long bytesPerLevel = (bytes[last] - bytes[0]) / (levelCounts[last] - levelCounts[0]);
+
+        // each additional level costs no more than a get from the level on its own
+        assertTrue(bytesPerLevel > 0);
+        assertTrue(bytesPerLevel <= levelGetBytes);
+    }
+
+    // walk of the cache levels as done before the level walk operator, a flatMap per level, built upfront
+    private static Observable<Boolean> nestedFlatMaps(int levelCount) {
+        Observable<Boolean> observable = Observable.just(false);
+
+        for (int i = 0; i < levelCount; i++) {
+            int index = i;
+
+            observable = observable.flatMap(success -> LEVEL_FN.call(index));
+        }
+
+        return observable;
+    }
+
+    private long allocatedBytesPerOp(Func0<Observable<?>> operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.call().subscribe(NO_OP);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.call().subscribe(NO_OP);
+        }
+
+        return (threadBean.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+    }
+}
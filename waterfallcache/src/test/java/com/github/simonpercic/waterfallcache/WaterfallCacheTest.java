@@ -1,6 +1,18 @@
 package com.github.simonpercic.waterfallcache;
 
+import android.content.ComponentCallbacks2;
+
+import com.github.simonpercic.waterfallcache.cache.BatchCache;
+import com.github.simonpercic.waterfallcache.cache.CacheLoader;
+import com.github.simonpercic.waterfallcache.cache.EnumerableCache;
+import com.github.simonpercic.waterfallcache.cache.MappedLogCache;
+import com.github.simonpercic.waterfallcache.cache.MemoryRxCache;
+import com.github.simonpercic.waterfallcache.cache.PeekableCache;
 import com.github.simonpercic.waterfallcache.cache.RxCache;
+import com.github.simonpercic.waterfallcache.cache.Trimmable;
+import com.github.simonpercic.waterfallcache.callback.WaterfallTimeoutCallback;
+import com.github.simonpercic.waterfallcache.expire.SimpleTimeProvider;
+import com.github.simonpercic.waterfallcache.memory.EvictionPolicy;
 import com.github.simonpercic.waterfallcache.model.SimpleObject;
 
 import org.junit.Assert;
@@ -9,15 +21,37 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import rx.Observable;
+import rx.Scheduler;
+import rx.observers.TestSubscriber;
 import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 /**
  * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
@@ -56,6 +90,75 @@ public class WaterfallCacheTest {
         verify(cache2).put(eq(key), eq(object));
     }
 
+    @Test
+    public void testPutFailure() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(false));
+        when(cache2.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(waterfallCache.put(key, object), Assert::assertFalse);
+
+        verify(cache1).put(eq(key), eq(object));
+        verify(cache2).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testPutParallel() throws Exception {
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withParallelWrites(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        PublishSubject<Boolean> level1Put = PublishSubject.create();
+
+        when(cache1.put(eq(key), eq(object))).thenReturn(level1Put);
+        when(cache2.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        cache.put(key, object).subscribe(subscriber);
+
+        verify(cache1).put(eq(key), eq(object));
+        verify(cache2).put(eq(key), eq(object));
+        subscriber.assertNoValues();
+
+        level1Put.onNext(true);
+        level1Put.onCompleted();
+
+        subscriber.assertValue(true);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void testPutParallelFailure() throws Exception {
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withParallelWrites(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(false));
+        when(cache2.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(cache.put(key, object), Assert::assertFalse);
+    }
+
     @Test
     public void testGetLevel1() throws Exception {
         String key = "TEST_KEY";
@@ -94,95 +197,1250 @@ public class WaterfallCacheTest {
     }
 
     @Test
-    public void testGetNoValue() throws Exception {
+    public void testGetLevel2AsyncBackfill() throws Exception {
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withAsyncBackfill(Schedulers.immediate())
+                .build();
+
         String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        PublishSubject<Boolean> level1Put = PublishSubject.create();
 
         when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
-        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+        when(cache1.put(eq(key), eq(object))).thenReturn(level1Put);
 
-        Observable<SimpleObject> observable = waterfallCache.get(key, SimpleObject.class);
-        ObservableTestUtils.testObservable(observable, Assert::assertNull, false);
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        assertTrue(level1Put.hasObservers());
+        verify(cache1).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testGetLevel2AsyncBackfillError() throws Exception {
+        List<Throwable> errors = new ArrayList<>();
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withAsyncBackfill(Schedulers.immediate())
+                .withBackgroundErrorCallback(errors::add)
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        Throwable throwable = new RuntimeException();
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.error(throwable));
+
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        assertEquals(1, errors.size());
+        assertEquals(throwable, errors.get(0));
+    }
+
+    @Test
+    public void testGetHedged() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withHedgedReads(100, TimeUnit.MILLISECONDS, scheduler)
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        PublishSubject<SimpleObject> level1 = PublishSubject.create();
+        when(cache1.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(level1);
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        cache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber);
 
         verify(cache1).get(eq(key), eq(SimpleObject.class));
+        verifyZeroInteractions(cache2);
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
         verify(cache2).get(eq(key), eq(SimpleObject.class));
+        subscriber.assertNoValues();
+
+        level1.onNext(null);
+        level1.onCompleted();
+
+        subscriber.assertValue(object);
+        verify(cache1).put(eq(key), eq(object));
     }
 
     @Test
-    public void testContainsLevel1() throws Exception {
+    public void testGetHedgedKeepsLevelPriority() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withHedgedReads(0, TimeUnit.MILLISECONDS, scheduler)
+                .build();
+
         String key = "TEST_KEY";
 
-        when(cache1.contains(eq(key))).thenReturn(Observable.just(true));
+        SimpleObject object1 = new SimpleObject("TEST_VALUE_1");
+        SimpleObject object2 = new SimpleObject("TEST_VALUE_2");
 
-        Observable<Boolean> observable = waterfallCache.contains(key);
-        ObservableTestUtils.testObservable(observable, Assert::assertTrue);
+        PublishSubject<SimpleObject> level1 = PublishSubject.create();
+        when(cache1.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(level1);
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object2));
 
-        verify(cache1).contains(eq(key));
-        verifyZeroInteractions(cache2);
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        cache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber);
+
+        scheduler.triggerActions();
+
+        verify(cache2).get(eq(key), eq(SimpleObject.class));
+        subscriber.assertNoValues();
+
+        level1.onNext(object1);
+        level1.onCompleted();
+
+        subscriber.assertValue(object1);
+        verify(cache1, never()).put(eq(key), eq(object2));
     }
 
     @Test
-    public void testContainsLevel2() throws Exception {
+    public void testGetLevelTimeout() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        WaterfallTimeoutCallback timeoutCallback = mock(WaterfallTimeoutCallback.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withLevelTimeouts(100, 0, TimeUnit.MILLISECONDS, scheduler)
+                .withTimeoutCallback(timeoutCallback)
+                .build();
+
         String key = "TEST_KEY";
         String value = "TEST_VALUE";
 
         SimpleObject object = new SimpleObject(value);
 
-        when(cache1.contains(eq(key))).thenReturn(Observable.just(false));
-        when(cache2.contains(eq(key))).thenReturn(Observable.just(true));
+        when(cache1.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.never());
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
 
-        when(cache1.get(eq(key), eq(Object.class))).thenReturn(Observable.just(null));
-        when(cache2.get(eq(key), eq(Object.class))).thenReturn(Observable.just(object));
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        cache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber);
 
-        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+        verifyZeroInteractions(cache2);
 
-        Observable<Boolean> observable = waterfallCache.contains(key);
-        ObservableTestUtils.testObservable(observable, Assert::assertTrue);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
 
-        verify(cache1).contains(eq(key));
-        verify(cache2).contains(eq(key));
+        subscriber.assertValue(object);
+        verify(cache2).get(eq(key), eq(SimpleObject.class));
+        verify(timeoutCallback).onReadTimeout(0);
+    }
 
-        verify(cache1).get(eq(key), eq(Object.class));
-        verify(cache2).get(eq(key), eq(Object.class));
+    @Test
+    public void testGetPerLevelTimeout() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        WaterfallTimeoutCallback timeoutCallback = mock(WaterfallTimeoutCallback.class);
 
-        verify(cache1).put(eq(key), eq(object));
-        verify(cache2, never()).put(eq(key), eq(object));
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1, 10, 0, TimeUnit.MILLISECONDS)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withLevelTimeouts(100, 0, TimeUnit.MILLISECONDS, scheduler)
+                .withTimeoutCallback(timeoutCallback)
+                .build();
+
+        String key = "TEST_KEY";
+
+        when(cache1.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.never());
+        when(cache2.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.never());
+
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        cache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber);
+
+        scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+
+        verify(timeoutCallback).onReadTimeout(0);
+        verify(cache2).get(eq(key), eq(SimpleObject.class));
+
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+
+        subscriber.assertNoValues();
+        verify(timeoutCallback, never()).onReadTimeout(1);
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+
+        subscriber.assertValue(null);
+        verify(timeoutCallback).onReadTimeout(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPerLevelTimeoutNegative() throws Exception {
+        WaterfallCache.builder().addCache(cache1, -1, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLevelTimeoutsNullScheduler() throws Exception {
+        WaterfallCache.builder().withLevelTimeouts(100, 100, TimeUnit.MILLISECONDS, null);
     }
 
     @Test
-    public void testContainsNoValue() throws Exception {
+    public void testPutLevelTimeout() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        WaterfallTimeoutCallback timeoutCallback = mock(WaterfallTimeoutCallback.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withLevelTimeouts(0, 100, TimeUnit.MILLISECONDS, scheduler)
+                .withTimeoutCallback(timeoutCallback)
+                .build();
+
         String key = "TEST_KEY";
+        String value = "TEST_VALUE";
 
-        when(cache1.contains(eq(key))).thenReturn(Observable.just(false));
-        when(cache2.contains(eq(key))).thenReturn(Observable.just(false));
+        SimpleObject object = new SimpleObject(value);
 
-        Observable<Boolean> observable = waterfallCache.contains(key);
-        ObservableTestUtils.testObservable(observable, Assert::assertFalse);
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.never());
+        when(cache2.put(eq(key), eq(object))).thenReturn(Observable.just(true));
 
-        verify(cache1).contains(eq(key));
-        verify(cache2).contains(eq(key));
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        cache.put(key, object).subscribe(subscriber);
+
+        subscriber.assertNoValues();
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        verify(cache2).put(eq(key), eq(object));
+        verify(timeoutCallback).onWriteTimeout(0);
+
+        // the level that timed out did not take the value
+        subscriber.assertValue(false);
     }
 
     @Test
-    public void testRemove() throws Exception {
+    public void testGetCircuitBreaker() throws Exception {
+        SimpleTimeProvider timeProvider = mock(SimpleTimeProvider.class);
+        when(timeProvider.currentTime()).thenReturn(0L);
+
+        List<Throwable> errors = new ArrayList<>();
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withCircuitBreaker(1, 0, 10, TimeUnit.SECONDS, timeProvider)
+                .withBackgroundErrorCallback(errors::add)
+                .build();
+
         String key = "TEST_KEY";
+        String value = "TEST_VALUE";
 
-        when(cache1.remove(eq(key))).thenReturn(Observable.just(true));
-        when(cache2.remove(eq(key))).thenReturn(Observable.just(true));
+        SimpleObject object = new SimpleObject(value);
 
-        ObservableTestUtils.testObservable(waterfallCache.remove(key), Assert::assertTrue);
+        Throwable throwable = new RuntimeException();
 
-        verify(cache1).remove(eq(key));
-        verify(cache2).remove(eq(key));
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.error(throwable));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        assertEquals(1, errors.size());
+        assertEquals(throwable, errors.get(0));
+
+        observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(cache1).get(eq(key), eq(SimpleObject.class));
+        verify(cache1, never()).put(eq(key), eq(object));
+        verify(cache2, times(2)).get(eq(key), eq(SimpleObject.class));
+
+        when(timeProvider.currentTime()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+
+        observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(cache1, times(2)).get(eq(key), eq(SimpleObject.class));
+        verify(cache2, times(2)).get(eq(key), eq(SimpleObject.class));
     }
 
     @Test
-    public void testClear() throws Exception {
-        when(cache1.clear()).thenReturn(Observable.just(true));
-        when(cache2.clear()).thenReturn(Observable.just(true));
+    public void testPutCircuitBreakerProbeNotSubscribed() throws Exception {
+        SimpleTimeProvider timeProvider = mock(SimpleTimeProvider.class);
+        when(timeProvider.currentTime()).thenReturn(0L);
 
-        ObservableTestUtils.testObservable(waterfallCache.clear(), Assert::assertTrue);
+        TestScheduler scheduler = new TestScheduler();
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withParallelWrites(scheduler)
+                .withCircuitBreaker(1, 0, 10, TimeUnit.SECONDS, timeProvider)
+                .withBackgroundErrorCallback(throwable -> {
+                })
+                .build();
+
+        String key = "TEST_KEY";
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.error(new RuntimeException()));
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        cache.put(key, object).subscribe(subscriber);
+        scheduler.triggerActions();
+
+        subscriber.assertValue(false);
+
+        // half-open, the put is unsubscribed from before it is subscribed to the cache level
+        when(timeProvider.currentTime()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+
+        cache.put(key, object).subscribe().unsubscribe();
+        scheduler.triggerActions();
+
+        verify(cache1, times(1)).put(eq(key), eq(object));
+
+        // the probe was not taken, the next put probes the cache level
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        subscriber = new TestSubscriber<>();
+        cache.put(key, object).subscribe(subscriber);
+        scheduler.triggerActions();
+
+        subscriber.assertValue(true);
+        verify(cache1, times(2)).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testGetLevel2FrequencyAdmission() throws Exception {
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .withFrequencyAdmission(100)
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(cache1, never()).put(eq(key), eq(object));
+
+        observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(cache1).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testGetNoValue() throws Exception {
+        String key = "TEST_KEY";
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        Observable<SimpleObject> observable = waterfallCache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, Assert::assertNull, false);
+
+        verify(cache1).get(eq(key), eq(SimpleObject.class));
+        verify(cache2).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testGetConcurrentSharesLookup() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        PublishSubject<SimpleObject> level1 = PublishSubject.create();
+        when(cache1.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(level1);
+
+        TestSubscriber<SimpleObject> subscriber1 = new TestSubscriber<>();
+        TestSubscriber<SimpleObject> subscriber2 = new TestSubscriber<>();
+
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber1);
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber2);
+
+        level1.onNext(object);
+        level1.onCompleted();
+
+        subscriber1.assertValue(object);
+        subscriber2.assertValue(object);
+
+        verify(cache1).get(eq(key), eq(SimpleObject.class));
+        verifyZeroInteractions(cache2);
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+
+        Observable<SimpleObject> observable = waterfallCache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(cache1, times(2)).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testGetConcurrentSharesBackfill() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        PublishSubject<SimpleObject> level2 = PublishSubject.create();
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(level2);
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        TestSubscriber<SimpleObject> subscriber1 = new TestSubscriber<>();
+        TestSubscriber<SimpleObject> subscriber2 = new TestSubscriber<>();
+
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber1);
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber2);
+
+        level2.onNext(object);
+        level2.onCompleted();
+
+        subscriber1.assertValue(object);
+        subscriber2.assertValue(object);
+
+        verify(cache1).get(eq(key), eq(SimpleObject.class));
+        verify(cache2).get(eq(key), eq(SimpleObject.class));
+        verify(cache1).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testGetAfterPutDoesNotJoinLookup() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        PublishSubject<SimpleObject> level1 = PublishSubject.create();
+        when(cache1.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(level1);
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+        when(cache2.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(new TestSubscriber<>());
+
+        ObservableTestUtils.testObservable(waterfallCache.put(key, object), Assert::assertTrue);
+
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(new TestSubscriber<>());
+
+        verify(cache1, times(2)).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testGetAfterPutOfOtherKeyJoinsLookup() throws Exception {
+        String key = "TEST_KEY";
+        String otherKey = "OTHER_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        PublishSubject<SimpleObject> level1 = PublishSubject.create();
+        when(cache1.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(level1);
+        when(cache1.put(eq(otherKey), eq(object))).thenReturn(Observable.just(true));
+        when(cache2.put(eq(otherKey), eq(object))).thenReturn(Observable.just(true));
+
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(new TestSubscriber<>());
+
+        ObservableTestUtils.testObservable(waterfallCache.put(otherKey, object), Assert::assertTrue);
+
+        waterfallCache.<SimpleObject>get(key, SimpleObject.class).subscribe(new TestSubscriber<>());
+
+        verify(cache1).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testGetPutDuringLookupNotPromoted() throws Exception {
+        WaterfallCache cache = WaterfallCache.builder()
+                .addMemoryCache(10)
+                .addCache(cache1)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+
+        SimpleObject oldObject = new SimpleObject("OLD_VALUE");
+        SimpleObject newObject = new SimpleObject("NEW_VALUE");
+
+        PublishSubject<SimpleObject> level2 = PublishSubject.create();
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.<SimpleObject>get(eq(key), eq(SimpleObject.class))).thenReturn(level2);
+        when(cache1.put(eq(key), eq(newObject))).thenReturn(Observable.just(true));
+        when(cache2.put(eq(key), eq(newObject))).thenReturn(Observable.just(true));
+
+        TestSubscriber<SimpleObject> subscriber = new TestSubscriber<>();
+        cache.<SimpleObject>get(key, SimpleObject.class).subscribe(subscriber);
+
+        ObservableTestUtils.testObservable(cache.put(key, newObject), Assert::assertTrue);
+
+        level2.onNext(oldObject);
+        level2.onCompleted();
+
+        subscriber.assertValue(oldObject);
+
+        verify(cache1, never()).put(eq(key), eq(oldObject));
+
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(newObject, simpleObject));
+    }
+
+    @Test
+    public void testGetAllPutDuringLookupNotPromoted() throws Exception {
+        BatchRxCache batchCache = mock(BatchRxCache.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addMemoryCache(10)
+                .addCache(cache1)
+                .addCache(batchCache)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+
+        SimpleObject oldObject = new SimpleObject("OLD_VALUE");
+        SimpleObject newObject = new SimpleObject("NEW_VALUE");
+
+        PublishSubject<Map<String, SimpleObject>> level2 = PublishSubject.create();
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(batchCache.<SimpleObject>getAll(eq(Collections.singletonList(key)), eq(SimpleObject.class)))
+                .thenReturn(level2);
+        when(cache1.put(eq(key), eq(newObject))).thenReturn(Observable.just(true));
+        when(batchCache.put(eq(key), eq(newObject))).thenReturn(Observable.just(true));
+
+        TestSubscriber<Map<String, SimpleObject>> subscriber = new TestSubscriber<>();
+        cache.<SimpleObject>getAll(Collections.singletonList(key), SimpleObject.class).subscribe(subscriber);
+
+        ObservableTestUtils.testObservable(cache.put(key, newObject), Assert::assertTrue);
+
+        level2.onNext(Collections.singletonMap(key, oldObject));
+        level2.onCompleted();
+
+        subscriber.assertValue(Collections.singletonMap(key, oldObject));
+
+        verify(cache1, never()).put(eq(key), eq(oldObject));
+
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(newObject, simpleObject));
+    }
+
+    @Test
+    public void testGetLoader() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+        when(cache2.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        CacheLoader<SimpleObject> loader = (loadKey, typeOfT) -> Observable.just(object);
+
+        Observable<SimpleObject> observable = waterfallCache.get(key, SimpleObject.class, loader);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(cache1).put(eq(key), eq(object));
+        verify(cache2).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testGetLoaderNoValue() throws Exception {
+        String key = "TEST_KEY";
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        CacheLoader<SimpleObject> loader = (loadKey, typeOfT) -> Observable.empty();
+
+        Observable<SimpleObject> observable = waterfallCache.get(key, SimpleObject.class, loader);
+        ObservableTestUtils.testObservable(observable, Assert::assertNull, false);
+
+        verify(cache1, never()).put(anyString(), any());
+        verify(cache2, never()).put(anyString(), any());
+    }
+
+    @Test
+    public void testGetLoaderConcurrentSharesLoad() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+        when(cache2.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        PublishSubject<SimpleObject> load = PublishSubject.create();
+        int[] loadCount = new int[1];
+
+        CacheLoader<SimpleObject> loader = (loadKey, typeOfT) -> {
+            loadCount[0]++;
+            return load;
+        };
+
+        TestSubscriber<SimpleObject> subscriber1 = new TestSubscriber<>();
+        TestSubscriber<SimpleObject> subscriber2 = new TestSubscriber<>();
+
+        waterfallCache.get(key, SimpleObject.class, loader).subscribe(subscriber1);
+        waterfallCache.get(key, SimpleObject.class, loader).subscribe(subscriber2);
+
+        load.onNext(object);
+        load.onCompleted();
+
+        subscriber1.assertValue(object);
+        subscriber2.assertValue(object);
+
+        assertEquals(1, loadCount[0]);
+        verify(cache1).get(eq(key), eq(SimpleObject.class));
+        verify(cache1).put(eq(key), eq(object));
+        verify(cache2).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testGetDefaultLoader() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        WaterfallCache waterfallCache = WaterfallCache.builder()
+                .addCache(cache1)
+                .withLoader((loadKey, typeOfT) -> Observable.just(object))
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        Observable<SimpleObject> observable = waterfallCache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(cache1).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testGetIfPresentNoPeekableLevel() throws Exception {
+        assertNull(waterfallCache.getIfPresent("TEST_KEY"));
+
+        verifyZeroInteractions(cache1);
+        verifyZeroInteractions(cache2);
+    }
+
+    @Test
+    public void testGetIfPresentPeekableLevel() throws Exception {
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        RxCache peekableCache = mock(RxCache.class, withSettings().extraInterfaces(PeekableCache.class));
+        when(((PeekableCache) peekableCache).getIfPresent(eq(key))).thenReturn(object);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(peekableCache)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        SimpleObject result = cache.getIfPresent(key);
+        assertEquals(value, result.getValue());
+
+        verify((PeekableCache) peekableCache).getIfPresent(eq(key));
+        verifyZeroInteractions(cache1);
+    }
+
+    @Test
+    public void testGetFilteredLevel() throws Exception {
+        EnumerableRxCache filteredCache = mock(EnumerableRxCache.class);
+
+        when(filteredCache.keys()).thenReturn(Observable.just(Collections.singletonList("OTHER_KEY")));
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addFilteredCache(filteredCache, 100)
+                .withFilterRebuildScheduler(Schedulers.immediate())
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, Assert::assertNull, false);
+
+        verify(filteredCache, never()).get(eq(key), eq(SimpleObject.class));
+
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+        when(filteredCache.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+        when(filteredCache.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+
+        ObservableTestUtils.testObservable(cache.put(key, object), Assert::assertTrue);
+
+        observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+
+        verify(filteredCache).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testGetFilteredMappedLogLevel() throws Exception {
+        File file = File.createTempFile("waterfallcache", ".log");
+        file.deleteOnExit();
+        new File(file.getPath() + ".compact").deleteOnExit();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        MappedLogCache logCache = spy(new MappedLogCache(file, 64 * 1024));
+        logCache.put(key, value).toBlocking().single();
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addFilteredCache(logCache, 100)
+                .withFilterRebuildScheduler(Schedulers.immediate())
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        Observable<String> observable = cache.get(key, String.class);
+        ObservableTestUtils.testObservable(observable, cachedValue -> assertEquals(value, cachedValue));
+        ObservableTestUtils.testObservable(cache.get("OTHER_KEY", String.class), Assert::assertNull, false);
+
+        // the filter built from the keys of the log rules out the other key, the log is not read
+        verify(logCache).get(eq(key), eq(String.class));
+        verify(logCache, never()).get(eq("OTHER_KEY"), eq(String.class));
+    }
+
+    @Test
+    public void testGetFilteredLevelBeforeFilterBuilt() throws Exception {
+        EnumerableRxCache filteredCache = mock(EnumerableRxCache.class);
+        TestScheduler scheduler = new TestScheduler();
+
+        when(filteredCache.keys()).thenReturn(Observable.just(Collections.singletonList("OTHER_KEY")));
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addFilteredCache(filteredCache, 100)
+                .withFilterRebuildScheduler(scheduler)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        verify(filteredCache, never()).keys();
+
+        String key = "TEST_KEY";
+
+        when(filteredCache.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        ObservableTestUtils.testObservable(cache.get(key, SimpleObject.class), Assert::assertNull, false);
+
+        verify(filteredCache).get(eq(key), eq(SimpleObject.class));
+
+        scheduler.triggerActions();
+
+        verify(filteredCache).keys();
+
+        ObservableTestUtils.testObservable(cache.get(key, SimpleObject.class), Assert::assertNull, false);
+
+        verify(filteredCache).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testContainsFilteredLevel() throws Exception {
+        EnumerableRxCache filteredCache = mock(EnumerableRxCache.class);
+
+        when(filteredCache.keys()).thenReturn(Observable.just(Collections.singletonList("OTHER_KEY")));
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addFilteredCache(filteredCache, 100)
+                .withFilterRebuildScheduler(Schedulers.immediate())
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+
+        when(cache1.contains(eq(key))).thenReturn(Observable.just(false));
+
+        ObservableTestUtils.testObservable(cache.contains(key), Assert::assertFalse);
+
+        verify(filteredCache, never()).contains(eq(key));
+    }
+
+    @Test
+    public void testGetNegativeCache() throws Exception {
+        SimpleTimeProvider timeProvider = mock(SimpleTimeProvider.class);
+        when(timeProvider.currentTime()).thenReturn(0L);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withNegativeCache(100, 10, TimeUnit.SECONDS, timeProvider)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        ObservableTestUtils.testObservable(cache.get(key, SimpleObject.class), Assert::assertNull, false);
+        ObservableTestUtils.testObservable(cache.get(key, SimpleObject.class), Assert::assertNull, false);
+        ObservableTestUtils.testObservable(cache.contains(key), Assert::assertFalse);
+
+        verify(cache1).get(eq(key), eq(SimpleObject.class));
+        verify(cache2).get(eq(key), eq(SimpleObject.class));
+        verify(cache1, never()).contains(eq(key));
+
+        when(timeProvider.currentTime()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+
+        ObservableTestUtils.testObservable(cache.get(key, SimpleObject.class), Assert::assertNull, false);
+
+        verify(cache1, times(2)).get(eq(key), eq(SimpleObject.class));
+        verify(cache2, times(2)).get(eq(key), eq(SimpleObject.class));
+    }
+
+    @Test
+    public void testGetNegativeCacheInvalidatedByPut() throws Exception {
+        SimpleTimeProvider timeProvider = mock(SimpleTimeProvider.class);
+        when(timeProvider.currentTime()).thenReturn(0L);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .withNegativeCache(100, 10, TimeUnit.SECONDS, timeProvider)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        ObservableTestUtils.testObservable(cache.get(key, SimpleObject.class), Assert::assertNull, false);
+
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+        when(cache1.get(eq(key), eq(SimpleObject.class))).thenReturn(Observable.just(object));
+
+        ObservableTestUtils.testObservable(cache.put(key, object), Assert::assertTrue);
+
+        Observable<SimpleObject> observable = cache.get(key, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(value, simpleObject.getValue()));
+    }
+
+    @Test
+    public void testGetAll() throws Exception {
+        BatchRxCache batchCache = mock(BatchRxCache.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(batchCache)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        SimpleObject objectA = new SimpleObject("VALUE_A");
+        SimpleObject objectB = new SimpleObject("VALUE_B");
+
+        when(cache1.get(eq("KEY_A"), eq(SimpleObject.class))).thenReturn(Observable.just(objectA));
+        when(cache1.get(eq("KEY_B"), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache1.get(eq("KEY_C"), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        Map<String, SimpleObject> level2Values = Collections.singletonMap("KEY_B", objectB);
+        when(batchCache.<SimpleObject>getAll(eq(Arrays.asList("KEY_B", "KEY_C")), eq(SimpleObject.class)))
+                .thenReturn(Observable.just(level2Values));
+
+        when(cache1.put(eq("KEY_B"), eq(objectB))).thenReturn(Observable.just(true));
+
+        Observable<Map<String, SimpleObject>> observable = cache.getAll(Arrays.asList("KEY_A", "KEY_B", "KEY_C"),
+                SimpleObject.class);
+
+        ObservableTestUtils.testObservable(observable, values -> {
+            assertEquals(2, values.size());
+            assertEquals(objectA, values.get("KEY_A"));
+            assertEquals(objectB, values.get("KEY_B"));
+        });
+
+        verify(batchCache).getAll(eq(Arrays.asList("KEY_B", "KEY_C")), eq(SimpleObject.class));
+        verify(batchCache, never()).get(eq("KEY_B"), eq(SimpleObject.class));
+        verify(cache1).put(eq("KEY_B"), eq(objectB));
+    }
+
+    @Test
+    public void testGetAllDuplicateKeys() throws Exception {
+        BatchRxCache batchCache = mock(BatchRxCache.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(batchCache)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        SimpleObject objectA = new SimpleObject("VALUE_A");
+        SimpleObject objectB = new SimpleObject("VALUE_B");
+
+        when(cache1.get(eq("KEY_A"), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+        when(cache1.get(eq("KEY_B"), eq(SimpleObject.class))).thenReturn(Observable.just(null));
+
+        Map<String, SimpleObject> level2Values = new HashMap<>();
+        level2Values.put("KEY_A", objectA);
+        level2Values.put("KEY_B", objectB);
+        when(batchCache.<SimpleObject>getAll(eq(Arrays.asList("KEY_A", "KEY_B")), eq(SimpleObject.class)))
+                .thenReturn(Observable.just(level2Values));
+
+        when(cache1.put(eq("KEY_A"), eq(objectA))).thenReturn(Observable.just(true));
+        when(cache1.put(eq("KEY_B"), eq(objectB))).thenReturn(Observable.just(true));
+
+        Observable<Map<String, SimpleObject>> observable = cache.getAll(
+                Arrays.asList("KEY_A", "KEY_B", "KEY_A", "KEY_A"), SimpleObject.class);
+
+        ObservableTestUtils.testObservable(observable, values -> assertEquals(level2Values, values));
+
+        verify(batchCache).getAll(eq(Arrays.asList("KEY_A", "KEY_B")), eq(SimpleObject.class));
+        verify(cache1).put(eq("KEY_A"), eq(objectA));
+        verify(cache1).put(eq("KEY_B"), eq(objectB));
+
+        when(cache1.get(eq("KEY_A"), eq(SimpleObject.class))).thenReturn(Observable.just(objectA));
+
+        ObservableTestUtils.testObservable(cache.get("KEY_A", SimpleObject.class),
+                simpleObject -> assertEquals(objectA, simpleObject));
+    }
+
+    @Test
+    public void testPutAll() throws Exception {
+        BatchRxCache batchCache = mock(BatchRxCache.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(batchCache)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        SimpleObject objectA = new SimpleObject("VALUE_A");
+        SimpleObject objectB = new SimpleObject("VALUE_B");
+
+        Map<String, SimpleObject> values = new HashMap<>();
+        values.put("KEY_A", objectA);
+        values.put("KEY_B", objectB);
+
+        when(cache1.put(eq("KEY_A"), eq(objectA))).thenReturn(Observable.just(true));
+        when(cache1.put(eq("KEY_B"), eq(objectB))).thenReturn(Observable.just(true));
+        when(batchCache.putAll(eq(values))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(cache.putAll(values), Assert::assertTrue);
+
+        verify(cache1).put(eq("KEY_A"), eq(objectA));
+        verify(cache1).put(eq("KEY_B"), eq(objectB));
+        verify(batchCache).putAll(eq(values));
+        verify(batchCache, never()).put(eq("KEY_A"), eq(objectA));
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        BatchRxCache batchCache = mock(BatchRxCache.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(batchCache)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        List<String> keys = Arrays.asList("KEY_A", "KEY_B");
+
+        when(cache1.remove(eq("KEY_A"))).thenReturn(Observable.just(true));
+        when(cache1.remove(eq("KEY_B"))).thenReturn(Observable.just(false));
+        when(batchCache.removeAll(eq(keys))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(cache.removeAll(keys), Assert::assertFalse);
+
+        verify(cache1).remove(eq("KEY_A"));
+        verify(cache1).remove(eq("KEY_B"));
+        verify(batchCache).removeAll(eq(keys));
+    }
+
+    @Test
+    public void testContainsLevel1() throws Exception {
+        String key = "TEST_KEY";
+
+        when(cache1.contains(eq(key))).thenReturn(Observable.just(true));
+
+        Observable<Boolean> observable = waterfallCache.contains(key);
+        ObservableTestUtils.testObservable(observable, Assert::assertTrue);
+
+        verify(cache1).contains(eq(key));
+        verifyZeroInteractions(cache2);
+    }
+
+    @Test
+    public void testContainsLevel2() throws Exception {
+        String key = "TEST_KEY";
+
+        when(cache1.contains(eq(key))).thenReturn(Observable.just(false));
+        when(cache2.contains(eq(key))).thenReturn(Observable.just(true));
+
+        Observable<Boolean> observable = waterfallCache.contains(key);
+        ObservableTestUtils.testObservable(observable, Assert::assertTrue);
+
+        verify(cache1).contains(eq(key));
+        verify(cache2).contains(eq(key));
+
+        verify(cache1, never()).get(eq(key), eq(Object.class));
+        verify(cache2, never()).get(eq(key), eq(Object.class));
+    }
+
+    @Test
+    public void testContainsLevel2Prefetch() throws Exception {
+        WaterfallCache waterfallCache = WaterfallCache.builder()
+                .addCache(cache1)
+                .addCache(cache2)
+                .withContainsPrefetch(true)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+        String value = "TEST_VALUE";
+
+        SimpleObject object = new SimpleObject(value);
+
+        when(cache1.contains(eq(key))).thenReturn(Observable.just(false));
+        when(cache2.contains(eq(key))).thenReturn(Observable.just(true));
+
+        when(cache1.get(eq(key), eq(Object.class))).thenReturn(Observable.just(null));
+        when(cache2.get(eq(key), eq(Object.class))).thenReturn(Observable.just(object));
+
+        when(cache1.put(eq(key), eq(object))).thenReturn(Observable.just(true));
+
+        Observable<Boolean> observable = waterfallCache.contains(key);
+        ObservableTestUtils.testObservable(observable, Assert::assertTrue);
+
+        verify(cache1).contains(eq(key));
+        verify(cache2).contains(eq(key));
+
+        verify(cache1).get(eq(key), eq(Object.class));
+        verify(cache2).get(eq(key), eq(Object.class));
+
+        verify(cache1).put(eq(key), eq(object));
+        verify(cache2, never()).put(eq(key), eq(object));
+    }
+
+    @Test
+    public void testContainsNoValue() throws Exception {
+        String key = "TEST_KEY";
+
+        when(cache1.contains(eq(key))).thenReturn(Observable.just(false));
+        when(cache2.contains(eq(key))).thenReturn(Observable.just(false));
+
+        Observable<Boolean> observable = waterfallCache.contains(key);
+        ObservableTestUtils.testObservable(observable, Assert::assertFalse);
+
+        verify(cache1).contains(eq(key));
+        verify(cache2).contains(eq(key));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        String key = "TEST_KEY";
+
+        when(cache1.remove(eq(key))).thenReturn(Observable.just(true));
+        when(cache2.remove(eq(key))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(waterfallCache.remove(key), Assert::assertTrue);
+
+        verify(cache1).remove(eq(key));
+        verify(cache2).remove(eq(key));
+    }
+
+    @Test
+    public void testRemoveFailure() throws Exception {
+        String key = "TEST_KEY";
+
+        when(cache1.remove(eq(key))).thenReturn(Observable.just(false));
+        when(cache2.remove(eq(key))).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(waterfallCache.remove(key), Assert::assertFalse);
+
+        verify(cache1).remove(eq(key));
+        verify(cache2).remove(eq(key));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        when(cache1.clear()).thenReturn(Observable.just(true));
+        when(cache2.clear()).thenReturn(Observable.just(true));
+
+        ObservableTestUtils.testObservable(waterfallCache.clear(), Assert::assertTrue);
+
+        verify(cache1).clear();
+        verify(cache2).clear();
+    }
+
+    private interface EnumerableRxCache extends RxCache, EnumerableCache {
+
+    }
+
+    @Test
+    public void testGetStackedMemoryLevels() throws Exception {
+        MemoryRxCache level1 = new MemoryRxCache(10, EvictionPolicy.TINY_LFU);
+        MemoryRxCache level2 = new MemoryRxCache(100);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addCache(level1)
+                .addCache(level2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        String key = "TEST_KEY";
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+
+        level2.put(key, object).subscribe();
+
+        ObservableTestUtils.testObservable(cache.get(key, SimpleObject.class),
+                simpleObject -> assertEquals(object, simpleObject));
+
+        assertEquals(object, level1.getIfPresent(key));
+    }
+
+    @Test
+    public void testGetSoftMemoryOverflow() throws Exception {
+        WaterfallCache cache = WaterfallCache.builder()
+                .addMemoryCache(1)
+                .withSoftMemoryOverflow(true)
+                .addCache(cache1)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+        SimpleObject object2 = new SimpleObject("TEST_VALUE_2");
+
+        when(cache1.put(anyString(), any())).thenReturn(Observable.just(true));
+
+        cache.put("TEST_KEY", object).subscribe();
+        cache.put("TEST_KEY_2", object2).subscribe();
+
+        ObservableTestUtils.testObservable(cache.get("TEST_KEY", SimpleObject.class),
+                simpleObject -> assertEquals(object, simpleObject));
+
+        verify(cache1, never()).get(anyString(), any());
+        assertEquals(1, cache.getSoftMemoryOverflowHitCount());
+        assertEquals(0, cache.getSoftMemoryOverflowMissCount());
+    }
+
+    @Test
+    public void testTrimMemory() throws Exception {
+        TrimmableRxCache trimmableCache = mock(TrimmableRxCache.class);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addMemoryCache(10)
+                .addCache(trimmableCache)
+                .addCache(cache2)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        when(trimmableCache.put(anyString(), any())).thenReturn(Observable.just(true));
+        when(cache2.put(anyString(), any())).thenReturn(Observable.just(true));
+
+        cache.put("TEST_KEY", "TEST_VALUE").subscribe();
+
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals("TEST_VALUE", cache.getIfPresent("TEST_KEY"));
+        verify(trimmableCache, never()).trim(anyDouble());
+
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        verify(trimmableCache).trim(0.5);
+
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        verify(trimmableCache).trim(0.0);
+        assertNull(cache.getIfPresent("TEST_KEY"));
+    }
+
+    @Test
+    public void testHeapUsageTrimLevel() throws Exception {
+        assertEquals(0, WaterfallCache.heapUsageTrimLevel(0.5));
+        assertEquals(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, WaterfallCache.heapUsageTrimLevel(0.8));
+        assertEquals(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, WaterfallCache.heapUsageTrimLevel(0.9));
+        assertEquals(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, WaterfallCache.heapUsageTrimLevel(0.99));
+    }
+
+    @Test
+    public void testStopHeapWatcher() throws Exception {
+        Scheduler scheduler = mock(Scheduler.class);
+        Scheduler.Worker worker = mock(Scheduler.Worker.class);
+
+        when(scheduler.createWorker()).thenReturn(worker);
+
+        WaterfallCache cache = WaterfallCache.builder()
+                .addMemoryCache(10)
+                .withHeapWatcher(1, TimeUnit.SECONDS, scheduler)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        verify(worker).schedulePeriodically(any(), eq(1000L), eq(1000L), eq(TimeUnit.MILLISECONDS));
+        verify(worker, never()).unsubscribe();
+
+        cache.stopHeapWatcher();
+
+        verify(worker).unsubscribe();
+    }
+
+    @Test
+    public void testStopHeapWatcherDisabled() throws Exception {
+        WaterfallCache cache = WaterfallCache.builder()
+                .addMemoryCache(10)
+                .withObserveOnScheduler(Schedulers.immediate())
+                .build();
+
+        cache.stopHeapWatcher();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeapWatcherNullScheduler() throws Exception {
+        WaterfallCache.builder().withHeapWatcher(1, TimeUnit.SECONDS, null);
+    }
+
+    private interface BatchRxCache extends RxCache, BatchCache {
+
+    }
+
+    private interface TrimmableRxCache extends RxCache, Trimmable {
 
-        verify(cache1).clear();
-        verify(cache2).clear();
     }
 }
@@ -0,0 +1,63 @@
+package com.github.simonpercic.waterfallcache.admission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FrequencySketch tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void testFrequency() throws Exception {
+        FrequencySketch sketch = new FrequencySketch(100);
+
+        assertEquals(0, sketch.frequency("TEST_KEY"));
+
+        sketch.increment("TEST_KEY");
+        sketch.increment("TEST_KEY");
+        sketch.increment("TEST_KEY");
+
+        assertEquals(3, sketch.frequency("TEST_KEY"));
+    }
+
+    @Test
+    public void testFrequencySaturates() throws Exception {
+        FrequencySketch sketch = new FrequencySketch(100);
+
+        for (int i = 0; i < 2 * FrequencySketch.MAX_FREQUENCY; i++) {
+            sketch.increment("TEST_KEY");
+        }
+
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency("TEST_KEY"));
+    }
+
+    @Test
+    public void testAging() throws Exception {
+        FrequencySketch sketch = new FrequencySketch(10);
+
+        for (int i = 0; i < 8; i++) {
+            sketch.increment("HOT_KEY");
+        }
+
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("KEY_" + i);
+        }
+
+        assertTrue(sketch.frequency("HOT_KEY") < 8);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        FrequencySketch sketch = new FrequencySketch(100);
+
+        sketch.increment("TEST_KEY");
+        sketch.clear();
+
+        assertEquals(0, sketch.frequency("TEST_KEY"));
+    }
+}
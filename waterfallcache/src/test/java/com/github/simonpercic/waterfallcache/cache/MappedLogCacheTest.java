@@ -0,0 +1,75 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import com.github.simonpercic.waterfallcache.ObservableTestUtils;
+import com.github.simonpercic.waterfallcache.serialize.JavaValueSerializer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * MappedLogCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class MappedLogCacheTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        MappedLogCache cache = new MappedLogCache(newLogFile(), 64 * 1024, new JavaValueSerializer(),
+                Schedulers.immediate());
+
+        ObservableTestUtils.testObservable(cache.put("TEST_KEY", "TEST_VALUE"), Assert::assertTrue);
+        ObservableTestUtils.testObservable(cache.<String>get("TEST_KEY", String.class),
+                value -> assertEquals("TEST_VALUE", value));
+
+        ObservableTestUtils.testObservable(cache.remove("TEST_KEY"), Assert::assertTrue);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertFalse);
+    }
+
+    @Test
+    public void testWritesOnWriteScheduler() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+
+        MappedLogCache cache = new MappedLogCache(newLogFile(), 64 * 1024, new JavaValueSerializer(), scheduler);
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        cache.put("TEST_KEY", "TEST_VALUE").subscribe(subscriber);
+
+        subscriber.assertNoValues();
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertFalse);
+
+        scheduler.triggerActions();
+
+        subscriber.assertValue(true);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertTrue);
+
+        subscriber = new TestSubscriber<>();
+        cache.clear().subscribe(subscriber);
+
+        subscriber.assertNoValues();
+        scheduler.triggerActions();
+
+        subscriber.assertValue(true);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertFalse);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullWriteScheduler() throws Exception {
+        new MappedLogCache(newLogFile(), 64 * 1024, new JavaValueSerializer(), null);
+    }
+
+    private static File newLogFile() throws Exception {
+        File file = File.createTempFile("waterfallcache", ".log");
+        file.deleteOnExit();
+        new File(file.getPath() + ".compact").deleteOnExit();
+        return file;
+    }
+}
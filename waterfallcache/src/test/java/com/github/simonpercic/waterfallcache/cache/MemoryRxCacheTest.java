@@ -0,0 +1,114 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import com.github.simonpercic.waterfallcache.ObservableTestUtils;
+import com.github.simonpercic.waterfallcache.memory.EvictionPolicy;
+import com.github.simonpercic.waterfallcache.model.SimpleObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * MemoryRxCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class MemoryRxCacheTest {
+
+    @Test
+    public void testPutGet() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10);
+
+        SimpleObject object = new SimpleObject("TEST_VALUE");
+
+        ObservableTestUtils.testObservable(cache.put("TEST_KEY", object), Assert::assertTrue);
+        ObservableTestUtils.testObservable(cache.<SimpleObject>get("TEST_KEY", SimpleObject.class),
+                value -> assertSame(object, value));
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertTrue);
+    }
+
+    @Test
+    public void testGetMiss() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10);
+
+        ObservableTestUtils.testObservable(cache.<SimpleObject>get("TEST_KEY", SimpleObject.class),
+                Assert::assertNull, false);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertFalse);
+    }
+
+    @Test
+    public void testRemoveClear() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10, EvictionPolicy.TINY_LFU);
+
+        cache.put("TEST_KEY", "TEST_VALUE").subscribe();
+        cache.put("TEST_KEY_2", "TEST_VALUE_2").subscribe();
+
+        ObservableTestUtils.testObservable(cache.remove("TEST_KEY"), Assert::assertTrue);
+        assertNull(cache.getIfPresent("TEST_KEY"));
+        assertEquals("TEST_VALUE_2", cache.getIfPresent("TEST_KEY_2"));
+
+        ObservableTestUtils.testObservable(cache.clear(), Assert::assertTrue);
+        assertNull(cache.getIfPresent("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10);
+
+        cache.put("TEST_KEY", "TEST_VALUE").subscribe();
+        cache.put("TEST_KEY_2", "TEST_VALUE_2").subscribe();
+
+        ObservableTestUtils.testObservable(cache.keys(),
+                keys -> assertEquals(new HashSet<>(Arrays.asList("TEST_KEY", "TEST_KEY_2")), new HashSet<>(keys)));
+    }
+
+    @Test
+    public void testEmitsSynchronously() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10);
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        cache.put("TEST_KEY", "TEST_VALUE").subscribe(subscriber);
+
+        subscriber.assertValue(true);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void testPutIsLazy() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+
+        assertNull(cache.getIfPresent("TEST_KEY"));
+    }
+
+    @Test
+    public void testBoundedByWeight() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10, (key, value) -> ((String) value).length(), EvictionPolicy.LRU);
+
+        cache.put("TEST_KEY", "12345678").subscribe();
+        cache.put("TEST_KEY_2", "12345678").subscribe();
+
+        assertNull(cache.getIfPresent("TEST_KEY"));
+        assertEquals("12345678", cache.getIfPresent("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testPutTooHeavy() throws Exception {
+        MemoryRxCache cache = new MemoryRxCache(10, (key, value) -> ((String) value).length(), EvictionPolicy.LRU);
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        cache.put("TEST_KEY", "12345678901").subscribe(subscriber);
+
+        subscriber.assertValue(false);
+        assertNull(cache.getIfPresent("TEST_KEY"));
+    }
+}
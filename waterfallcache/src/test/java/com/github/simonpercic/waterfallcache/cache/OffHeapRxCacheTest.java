@@ -0,0 +1,90 @@
+package com.github.simonpercic.waterfallcache.cache;
+
+import com.github.simonpercic.waterfallcache.ObservableTestUtils;
+import com.github.simonpercic.waterfallcache.serialize.JavaValueSerializer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * OffHeapRxCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class OffHeapRxCacheTest {
+
+    @Test
+    public void testPutGet() throws Exception {
+        OffHeapRxCache cache = new OffHeapRxCache(1024 * 1024);
+
+        ArrayList<String> value = new ArrayList<>(Arrays.asList("A", "B", "C"));
+
+        ObservableTestUtils.testObservable(cache.put("TEST_KEY", value), Assert::assertTrue);
+        ObservableTestUtils.testObservable(cache.<List<String>>get("TEST_KEY", ArrayList.class), list -> {
+            assertEquals(value, list);
+            assertNotSame(value, list);
+        });
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertTrue);
+    }
+
+    @Test
+    public void testGetMiss() throws Exception {
+        OffHeapRxCache cache = new OffHeapRxCache(1024 * 1024);
+
+        ObservableTestUtils.testObservable(cache.<String>get("TEST_KEY", String.class), Assert::assertNull, false);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertFalse);
+    }
+
+    @Test
+    public void testRemoveClear() throws Exception {
+        OffHeapRxCache cache = new OffHeapRxCache(1024 * 1024);
+
+        cache.put("TEST_KEY", "TEST_VALUE").subscribe();
+        cache.put("TEST_KEY_2", "TEST_VALUE_2").subscribe();
+
+        ObservableTestUtils.testObservable(cache.remove("TEST_KEY"), Assert::assertTrue);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY"), Assert::assertFalse);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY_2"), Assert::assertTrue);
+
+        ObservableTestUtils.testObservable(cache.clear(), Assert::assertTrue);
+        ObservableTestUtils.testObservable(cache.contains("TEST_KEY_2"), Assert::assertFalse);
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        OffHeapRxCache cache = new OffHeapRxCache(1024 * 1024);
+
+        cache.put("TEST_KEY", "TEST_VALUE").subscribe();
+        cache.put("TEST_KEY_2", "TEST_VALUE_2").subscribe();
+
+        ObservableTestUtils.testObservable(cache.keys(),
+                keys -> assertEquals(new HashSet<>(Arrays.asList("TEST_KEY", "TEST_KEY_2")), new HashSet<>(keys)));
+    }
+
+    @Test
+    public void testPutTooLarge() throws Exception {
+        OffHeapRxCache cache = new OffHeapRxCache(4096, 1024, new JavaValueSerializer());
+
+        ObservableTestUtils.testObservable(cache.put("TEST_KEY", new byte[2048]), Assert::assertFalse);
+    }
+
+    @Test
+    public void testPutNotSerializable() throws Exception {
+        OffHeapRxCache cache = new OffHeapRxCache(1024 * 1024);
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        cache.put("TEST_KEY", new Object()).subscribe(subscriber);
+
+        subscriber.assertError(java.io.NotSerializableException.class);
+    }
+}
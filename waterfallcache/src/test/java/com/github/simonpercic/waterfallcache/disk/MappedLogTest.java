@@ -0,0 +1,176 @@
+package com.github.simonpercic.waterfallcache.disk;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MappedLog tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class MappedLogTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        MappedLog log = new MappedLog(newLogFile(), 4096);
+
+        assertTrue(log.put("TEST_KEY", bytes(100, 1)));
+        assertArrayEquals(bytes(100, 1), log.get("TEST_KEY"));
+        assertTrue(log.contains("TEST_KEY"));
+
+        assertTrue(log.put("TEST_KEY", bytes(50, 2)));
+        assertArrayEquals(bytes(50, 2), log.get("TEST_KEY"));
+
+        log.remove("TEST_KEY");
+        assertNull(log.get("TEST_KEY"));
+        assertFalse(log.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        File file = newLogFile();
+
+        MappedLog log = new MappedLog(file, 4096);
+        log.put("TEST_KEY", bytes(100, 1));
+        log.put("TEST_KEY_2", bytes(100, 2));
+        log.put("TEST_KEY_2", bytes(10, 3));
+        log.put("TEST_KEY_3", bytes(100, 4));
+        log.remove("TEST_KEY_3");
+
+        MappedLog reopened = new MappedLog(file, 4096);
+
+        assertEquals(2, reopened.size());
+        assertArrayEquals(bytes(100, 1), reopened.get("TEST_KEY"));
+        assertArrayEquals(bytes(10, 3), reopened.get("TEST_KEY_2"));
+        assertNull(reopened.get("TEST_KEY_3"));
+
+        reopened.put("TEST_KEY_4", bytes(100, 5));
+        assertArrayEquals(bytes(100, 5), reopened.get("TEST_KEY_4"));
+    }
+
+    @Test
+    public void testTornRecordEndsLog() throws Exception {
+        File file = newLogFile();
+
+        MappedLog log = new MappedLog(file, 4096);
+        log.put("TEST_KEY", bytes(100, 1));
+        log.put("TEST_KEY_2", bytes(100, 2));
+
+        // clear the length of the second record, as if the crash happened before it was committed
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(12 + 8 + 100);
+        randomAccessFile.writeInt(0);
+        randomAccessFile.close();
+
+        MappedLog reopened = new MappedLog(file, 4096);
+
+        assertEquals(1, reopened.size());
+        assertArrayEquals(bytes(100, 1), reopened.get("TEST_KEY"));
+
+        reopened.put("TEST_KEY_3", bytes(100, 3));
+        assertArrayEquals(bytes(100, 3), new MappedLog(file, 4096).get("TEST_KEY_3"));
+    }
+
+    @Test
+    public void testCompactionKeepsRecentlyWritten() throws Exception {
+        File file = newLogFile();
+        MappedLog log = new MappedLog(file, 4096);
+
+        // records of 12 + 6 + 100 bytes, 34 fit in the log
+        for (int i = 0; i < 100; i++) {
+            assertTrue(log.put("KEY_" + (i < 10 ? "0" : "") + i, bytes(100, i)));
+        }
+
+        assertArrayEquals(bytes(100, 99), log.get("KEY_99"));
+        assertNull(log.get("KEY_00"));
+        assertTrue(log.size() > 10);
+        assertTrue(log.size() < 34);
+
+        MappedLog reopened = new MappedLog(file, 4096);
+
+        assertEquals(log.size(), reopened.size());
+        assertArrayEquals(bytes(100, 99), reopened.get("KEY_99"));
+    }
+
+    @Test
+    public void testCompactionDropsOverwrittenValues() throws Exception {
+        MappedLog log = new MappedLog(newLogFile(), 4096);
+
+        log.put("TEST_KEY", bytes(100, 1));
+
+        for (int i = 0; i < 100; i++) {
+            log.put("TEST_KEY_2", bytes(100, i));
+        }
+
+        assertEquals(2, log.size());
+        assertArrayEquals(bytes(100, 1), log.get("TEST_KEY"));
+        assertArrayEquals(bytes(100, 99), log.get("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testTooLarge() throws Exception {
+        MappedLog log = new MappedLog(newLogFile(), 4096);
+
+        log.put("TEST_KEY", bytes(100, 1));
+
+        assertFalse(log.put("TEST_KEY", bytes(2048, 2)));
+        assertNull(log.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        File file = newLogFile();
+
+        MappedLog log = new MappedLog(file, 4096);
+        log.put("TEST_KEY", bytes(100, 1));
+        log.clear();
+
+        assertEquals(0, log.size());
+        assertNull(log.get("TEST_KEY"));
+        assertEquals(0, new MappedLog(file, 4096).size());
+
+        log.put("TEST_KEY", bytes(100, 2));
+        assertArrayEquals(bytes(100, 2), log.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        File file = newLogFile();
+
+        MappedLog log = new MappedLog(file, 4096);
+        log.put("KEY_1", bytes(10, 1));
+        log.put("KEY_2", bytes(10, 2));
+        log.put("KEY_3", bytes(10, 3));
+        log.remove("KEY_2");
+
+        assertEquals(new HashSet<>(Arrays.asList("KEY_1", "KEY_3")), new HashSet<>(log.keys()));
+        assertEquals(new HashSet<>(Arrays.asList("KEY_1", "KEY_3")), new HashSet<>(new MappedLog(file, 4096).keys()));
+    }
+
+    private static File newLogFile() throws Exception {
+        File file = File.createTempFile("waterfallcache", ".log");
+        file.deleteOnExit();
+        new File(file.getPath() + ".compact").deleteOnExit();
+        return file;
+    }
+
+    private static byte[] bytes(int length, int value) {
+        byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (value + i);
+        }
+
+        return bytes;
+    }
+}
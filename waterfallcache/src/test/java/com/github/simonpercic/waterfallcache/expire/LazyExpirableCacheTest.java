@@ -1,6 +1,7 @@
 package com.github.simonpercic.waterfallcache.expire;
 
 import com.github.simonpercic.waterfallcache.ObservableTestUtils;
+import com.github.simonpercic.waterfallcache.cache.CacheLoader;
 import com.github.simonpercic.waterfallcache.cache.RxCache;
 import com.github.simonpercic.waterfallcache.expire.LazyExpirableCache.TimedValue;
 import com.github.simonpercic.waterfallcache.model.SimpleObject;
@@ -15,12 +16,16 @@ import org.mockito.MockitoAnnotations;
 import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -103,6 +108,117 @@ public class LazyExpirableCacheTest {
         ObservableTestUtils.testObservable(observable, Assert::assertNull, false);
     }
 
+    @Test
+    public void testGetRefreshAhead() throws Exception {
+        RxCache underlyingCache = mock(RxCache.class);
+
+        String cacheKey = "cache_key";
+        String testValue = "test";
+        String refreshedValue = "refreshed";
+
+        SimpleObject refreshedObject = new SimpleObject(refreshedValue);
+
+        PublishSubject<SimpleObject> load = PublishSubject.create();
+        int[] loadCount = new int[1];
+
+        CacheLoader<SimpleObject> loader = (key, type) -> {
+            loadCount[0]++;
+            return load;
+        };
+
+        LazyExpirableCache lazyExpirableCache = LazyExpirableCache.fromCache(underlyingCache, 10, 60, TimeUnit.SECONDS,
+                loader, Schedulers.immediate(), simpleTimeProvider);
+
+        long currentTime = TimeUnit.HOURS.toMillis(2);
+        when(simpleTimeProvider.currentTime()).thenReturn(currentTime);
+
+        when(underlyingCache.get(eq(cacheKey), any()))
+                .thenReturn(Observable.just(
+                        new TimedValue<>(new SimpleObject(testValue), currentTime - TimeUnit.SECONDS.toMillis(15))));
+
+        ArgumentCaptor<TimedValue> timedValueArgumentCaptor = ArgumentCaptor.forClass(TimedValue.class);
+        when(underlyingCache.put(eq(cacheKey), timedValueArgumentCaptor.capture())).thenReturn(Observable.just(true));
+
+        Observable<SimpleObject> observable = lazyExpirableCache.get(cacheKey, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(testValue, simpleObject.getValue()));
+
+        observable = lazyExpirableCache.get(cacheKey, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(testValue, simpleObject.getValue()));
+
+        assertEquals(1, loadCount[0]);
+        verify(underlyingCache, never()).put(any(), any());
+
+        load.onNext(refreshedObject);
+        load.onCompleted();
+
+        TimedValue timedValue = timedValueArgumentCaptor.getValue();
+        assertEquals(refreshedObject, timedValue.value);
+        assertEquals(currentTime, timedValue.addedOn);
+        verify(underlyingCache, never()).remove(any());
+    }
+
+    @Test
+    public void testGetRefreshAheadPutWhileLoading() throws Exception {
+        RxCache underlyingCache = mock(RxCache.class);
+
+        String cacheKey = "cache_key";
+        String testValue = "test";
+        String putValue = "put";
+
+        PublishSubject<SimpleObject> load = PublishSubject.create();
+        CacheLoader<SimpleObject> loader = (key, type) -> load;
+
+        LazyExpirableCache lazyExpirableCache = LazyExpirableCache.fromCache(underlyingCache, 10, 60, TimeUnit.SECONDS,
+                loader, Schedulers.immediate(), simpleTimeProvider);
+
+        long currentTime = TimeUnit.HOURS.toMillis(2);
+        when(simpleTimeProvider.currentTime()).thenReturn(currentTime);
+
+        when(underlyingCache.get(eq(cacheKey), any()))
+                .thenReturn(Observable.just(
+                        new TimedValue<>(new SimpleObject(testValue), currentTime - TimeUnit.SECONDS.toMillis(15))));
+
+        Observable<SimpleObject> observable = lazyExpirableCache.get(cacheKey, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, simpleObject -> assertEquals(testValue,
+                simpleObject.getValue()));
+
+        when(underlyingCache.get(eq(cacheKey), any()))
+                .thenReturn(Observable.just(new TimedValue<>(new SimpleObject(putValue), currentTime)));
+
+        load.onNext(new SimpleObject("refreshed"));
+        load.onCompleted();
+
+        verify(underlyingCache, never()).put(any(), any());
+    }
+
+    @Test
+    public void testGetRefreshAheadExpired() throws Exception {
+        RxCache underlyingCache = mock(RxCache.class);
+
+        CacheLoader<SimpleObject> loader = mock(CacheLoader.class);
+
+        LazyExpirableCache lazyExpirableCache = LazyExpirableCache.fromCache(underlyingCache, 10, 60, TimeUnit.SECONDS,
+                loader, Schedulers.immediate(), simpleTimeProvider);
+
+        long currentTime = TimeUnit.HOURS.toMillis(2);
+        when(simpleTimeProvider.currentTime()).thenReturn(currentTime);
+
+        String cacheKey = "cache_key";
+        String testValue = "test";
+
+        when(underlyingCache.get(eq(cacheKey), any()))
+                .thenReturn(Observable.just(
+                        new TimedValue<>(new SimpleObject(testValue), currentTime - TimeUnit.SECONDS.toMillis(65))));
+
+        when(underlyingCache.remove(eq(cacheKey))).thenReturn(Observable.just(true));
+
+        Observable<SimpleObject> observable = lazyExpirableCache.get(cacheKey, SimpleObject.class);
+        ObservableTestUtils.testObservable(observable, Assert::assertNull, false);
+
+        verify(underlyingCache).remove(cacheKey);
+        verifyZeroInteractions(loader);
+    }
+
     @Test
     public void testPut() throws Exception {
         RxCache underlyingCache = mock(RxCache.class);
@@ -0,0 +1,105 @@
+package com.github.simonpercic.waterfallcache.expire;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * NegativeCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class NegativeCacheTest {
+
+    @Mock SimpleTimeProvider simpleTimeProvider;
+
+    NegativeCache negativeCache;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(simpleTimeProvider.currentTime()).thenReturn(0L);
+
+        negativeCache = new NegativeCache(2, 10, TimeUnit.SECONDS, simpleTimeProvider);
+    }
+
+    @Test
+    public void testRecordMiss() throws Exception {
+        negativeCache.recordMiss("KEY", negativeCache.epoch());
+
+        assertTrue(negativeCache.isKnownMissing("KEY"));
+        assertFalse(negativeCache.isKnownMissing("OTHER_KEY"));
+    }
+
+    @Test
+    public void testRecordMissExpires() throws Exception {
+        negativeCache.recordMiss("KEY", negativeCache.epoch());
+
+        when(simpleTimeProvider.currentTime()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse(negativeCache.isKnownMissing("KEY"));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        negativeCache.recordMiss("KEY", negativeCache.epoch());
+        negativeCache.invalidate("KEY");
+
+        assertFalse(negativeCache.isKnownMissing("KEY"));
+    }
+
+    @Test
+    public void testRecordMissInvalidatedDuringLookup() throws Exception {
+        long lookupEpoch = negativeCache.epoch();
+
+        negativeCache.invalidate("KEY");
+        negativeCache.recordMiss("KEY", lookupEpoch);
+
+        assertFalse(negativeCache.isKnownMissing("KEY"));
+    }
+
+    @Test
+    public void testRecordMissOtherKeyInvalidatedDuringLookup() throws Exception {
+        long lookupEpoch = negativeCache.epoch();
+
+        negativeCache.invalidate("OTHER_KEY");
+        negativeCache.recordMiss("KEY", lookupEpoch);
+
+        assertTrue(negativeCache.isKnownMissing("KEY"));
+    }
+
+    @Test
+    public void testRecordMissAllInvalidatedDuringLookup() throws Exception {
+        long lookupEpoch = negativeCache.epoch();
+
+        negativeCache.invalidateAll();
+        negativeCache.recordMiss("KEY", lookupEpoch);
+
+        assertFalse(negativeCache.isKnownMissing("KEY"));
+    }
+
+    @Test
+    public void testRecordMissInvalidationForgottenDuringLookup() throws Exception {
+        long lookupEpoch = negativeCache.epoch();
+
+        // more invalidations than remembered, the invalidation of KEY is forgotten
+        negativeCache.invalidate("KEY");
+        negativeCache.invalidate("KEY_A");
+        negativeCache.invalidate("KEY_B");
+        negativeCache.recordMiss("KEY", lookupEpoch);
+
+        assertFalse(negativeCache.isKnownMissing("KEY"));
+
+        negativeCache.recordMiss("KEY", negativeCache.epoch());
+
+        assertTrue(negativeCache.isKnownMissing("KEY"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.simonpercic.waterfallcache.filter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BloomFilter tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testNotReadyMightContainAll() throws Exception {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContain("TEST_KEY"));
+    }
+
+    @Test
+    public void testPutAfterClear() throws Exception {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.clear();
+
+        assertTrue(filter.isReady());
+        assertFalse(filter.mightContain("TEST_KEY"));
+
+        filter.put("TEST_KEY");
+
+        assertTrue(filter.mightContain("TEST_KEY"));
+
+        filter.clear();
+
+        assertFalse(filter.mightContain("TEST_KEY"));
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        filter.beginRebuild();
+        filter.put("PUT_DURING_REBUILD");
+        filter.finishRebuild(Arrays.asList("KEY_1", "KEY_2"));
+
+        assertTrue(filter.isReady());
+        assertTrue(filter.mightContain("KEY_1"));
+        assertTrue(filter.mightContain("KEY_2"));
+        assertTrue(filter.mightContain("PUT_DURING_REBUILD"));
+        assertFalse(filter.mightContain("KEY_3"));
+    }
+
+    @Test
+    public void testAbortRebuild() throws Exception {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        filter.beginRebuild();
+        filter.abortRebuild();
+        filter.finishRebuild(Collections.singletonList("KEY_1"));
+
+        assertFalse(filter.isReady());
+    }
+
+    @Test
+    public void testFalsePositiveRate() throws Exception {
+        int expectedKeys = 10000;
+
+        List<String> keys = new ArrayList<>(expectedKeys);
+        for (int i = 0; i < expectedKeys; i++) {
+            keys.add("key_" + i);
+        }
+
+        BloomFilter filter = new BloomFilter(expectedKeys, 0.01);
+        filter.beginRebuild();
+        filter.finishRebuild(keys);
+
+        for (int i = 0; i < expectedKeys; i++) {
+            assertTrue(filter.mightContain(keys.get(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < expectedKeys; i++) {
+            if (filter.mightContain("other_" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < expectedKeys * 0.02);
+    }
+}
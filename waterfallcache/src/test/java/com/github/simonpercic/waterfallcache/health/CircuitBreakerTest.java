@@ -0,0 +1,129 @@
+package com.github.simonpercic.waterfallcache.health;
+
+import com.github.simonpercic.waterfallcache.expire.SimpleTimeProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CircuitBreaker tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class CircuitBreakerTest {
+
+    SimpleTimeProvider timeProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        timeProvider = mock(SimpleTimeProvider.class);
+        when(timeProvider.currentTime()).thenReturn(0L);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(2, 0, 10, TimeUnit.SECONDS, timeProvider);
+
+        fail(breaker);
+        succeed(breaker);
+        fail(breaker);
+
+        assertTrue(breaker.isClosed());
+
+        fail(breaker);
+
+        assertFalse(breaker.isClosed());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testSlowCallCountsAsFailure() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 100, 10000, TimeUnit.MILLISECONDS, timeProvider);
+
+        assertTrue(breaker.tryAcquire());
+
+        PublishSubject<Boolean> operation = PublishSubject.create();
+        operation.lift(breaker.<Boolean>monitor()).subscribe(new TestSubscriber<>());
+
+        when(timeProvider.currentTime()).thenReturn(101L);
+
+        operation.onNext(true);
+        operation.onCompleted();
+
+        assertFalse(breaker.isClosed());
+    }
+
+    @Test
+    public void testHalfOpenProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0, 10, TimeUnit.SECONDS, timeProvider);
+
+        fail(breaker);
+
+        assertFalse(breaker.tryAcquire());
+
+        when(timeProvider.currentTime()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        Observable.just(true).lift(breaker.<Boolean>monitor()).subscribe(new TestSubscriber<>());
+
+        assertTrue(breaker.isClosed());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testHalfOpenProbeFailureReopens() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(3, 0, 10, TimeUnit.SECONDS, timeProvider);
+
+        fail(breaker);
+        fail(breaker);
+        fail(breaker);
+
+        when(timeProvider.currentTime()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+
+        fail(breaker);
+
+        assertFalse(breaker.isClosed());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testUnsubscribedProbeReleasesHalfOpen() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0, 10, TimeUnit.SECONDS, timeProvider);
+
+        fail(breaker);
+
+        when(timeProvider.currentTime()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+
+        assertTrue(breaker.tryAcquire());
+
+        TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+        Observable.<Boolean>never().lift(breaker.<Boolean>monitor()).subscribe(subscriber);
+        subscriber.unsubscribe();
+
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private static void succeed(CircuitBreaker breaker) {
+        assertTrue(breaker.tryAcquire());
+        Observable.just(true).lift(breaker.<Boolean>monitor()).subscribe(new TestSubscriber<>());
+    }
+
+    private static void fail(CircuitBreaker breaker) {
+        assertTrue(breaker.tryAcquire());
+        Observable.<Boolean>error(new RuntimeException()).lift(breaker.<Boolean>monitor())
+                .subscribe(new TestSubscriber<>());
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ConcurrentMemoryCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class ConcurrentMemoryCacheTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(10);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        assertEquals("TEST_VALUE", cache.get("TEST_KEY"));
+
+        cache.put("TEST_KEY", "TEST_VALUE_2");
+        assertEquals("TEST_VALUE_2", cache.get("TEST_KEY"));
+
+        cache.remove("TEST_KEY");
+        assertNull(cache.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testBoundedBySize() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(100, null, 4);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        assertTrue(count(cache, 1000) <= 100);
+    }
+
+    @Test
+    public void testAccessedValueGetsSecondChance() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(10, null, 1);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        cache.get("KEY_0");
+        cache.put("KEY_10", 10);
+
+        assertEquals(0, cache.get("KEY_0"));
+        assertNull(cache.get("KEY_1"));
+    }
+
+    @Test
+    public void testBoundedByWeight() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(100, (key, value) -> (Integer) value, 1);
+
+        cache.put("TOO_HEAVY", 101);
+        assertNull(cache.get("TOO_HEAVY"));
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("KEY_" + i, 10);
+        }
+
+        assertEquals(10, count(cache, 20));
+    }
+
+    @Test
+    public void testPutHeavierThanSegmentRejected() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(128, (key, value) -> (Integer) value, 4);
+
+        assertEquals(32, cache.maxValueWeight());
+
+        assertTrue(cache.put("TEST_KEY", 32));
+        assertEquals(32, cache.get("TEST_KEY"));
+
+        // fits in the cache, but not in a segment, the previous value is removed
+        assertFalse(cache.put("TEST_KEY", 33));
+        assertNull(cache.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(10);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        cache.clear();
+
+        assertNull(cache.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(100, null, 4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100000; i++) {
+                        String key = "KEY_" + random.nextInt(500);
+                        int operation = random.nextInt(10);
+
+                        if (operation == 0) {
+                            cache.remove(key);
+                        } else if (operation < 4) {
+                            cache.put(key, key);
+                        } else {
+                            Object value = cache.get(key);
+                            assertTrue(value == null || value.equals(key));
+                        }
+                    }
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(count(cache, 500) <= 100);
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        ConcurrentMemoryCache cache = new ConcurrentMemoryCache(100, null, 1);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        cache.trim(0.25);
+        assertEquals(25, count(cache, 100));
+
+        cache.trim(0);
+        assertEquals(0, count(cache, 100));
+    }
+
+    private static int count(MemoryCache cache, int keyCount) {
+        int count = 0;
+
+        for (int i = 0; i < keyCount; i++) {
+            if (cache.get("KEY_" + i) != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import com.github.simonpercic.waterfallcache.model.SimpleObject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ObjectSizeWeigher tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class ObjectSizeWeigherTest {
+
+    @Test
+    public void testLargerValueWeighsMore() throws Exception {
+        ObjectSizeWeigher weigher = new ObjectSizeWeigher();
+
+        int small = weigher.weigh("TEST_KEY", new SimpleObject("A"));
+        int large = weigher.weigh("TEST_KEY", new SimpleObject(new String(new char[1000])));
+
+        assertTrue(large - small > 1900);
+    }
+
+    @Test
+    public void testCollection() throws Exception {
+        ObjectSizeWeigher weigher = new ObjectSizeWeigher();
+
+        List<SimpleObject> list = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            list.add(new SimpleObject("VALUE_" + i));
+        }
+
+        int empty = weigher.weigh("TEST_KEY", list.subList(0, 0));
+        int one = weigher.weigh("TEST_KEY", list.subList(0, 1));
+        int hundred = weigher.weigh("TEST_KEY", list);
+
+        assertTrue(hundred - empty > 50 * (one - empty));
+    }
+
+    @Test
+    public void testSharedObjectCountedOnce() throws Exception {
+        ObjectSizeWeigher weigher = new ObjectSizeWeigher();
+
+        SimpleObject object = new SimpleObject(new String(new char[1000]));
+
+        int once = weigher.weigh("TEST_KEY", new Object[]{object});
+        int twice = weigher.weigh("TEST_KEY", new Object[]{object, object});
+
+        assertTrue(twice - once < 100);
+    }
+
+    @Test
+    public void testPrimitiveArray() throws Exception {
+        ObjectSizeWeigher weigher = new ObjectSizeWeigher();
+
+        int empty = weigher.weigh("TEST_KEY", new long[0]);
+        int full = weigher.weigh("TEST_KEY", new long[100]);
+
+        assertEquals(800, full - empty);
+        assertTrue(weigher.weigh("TEST_KEY", Arrays.asList(1L, 2L)) > 0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * SoftMemoryCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class SoftMemoryCacheTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        SoftMemoryCache cache = new SoftMemoryCache();
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        assertEquals("TEST_VALUE", cache.get("TEST_KEY"));
+
+        cache.remove("TEST_KEY");
+        assertNull(cache.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        SoftMemoryCache cache = new SoftMemoryCache();
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        cache.clear();
+
+        assertNull(cache.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testHitMissCount() throws Exception {
+        SoftMemoryCache cache = new SoftMemoryCache();
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+
+        cache.get("TEST_KEY");
+        cache.get("TEST_KEY");
+        cache.get("TEST_KEY_2");
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        SoftMemoryCache cache = new SoftMemoryCache();
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        cache.trim(0.5);
+
+        int count = 0;
+
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("KEY_" + i) != null) {
+                count++;
+            }
+        }
+
+        assertEquals(50, count);
+    }
+}
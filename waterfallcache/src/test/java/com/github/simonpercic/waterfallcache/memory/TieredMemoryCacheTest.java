@@ -0,0 +1,116 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TieredMemoryCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class TieredMemoryCacheTest {
+
+    @Test
+    public void testEvictedValuesOverflow() throws Exception {
+        SoftMemoryCache overflow = new SoftMemoryCache();
+        TieredMemoryCache cache = new TieredMemoryCache(EvictionPolicy.LRU, 10, null, overflow);
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, cache.get("KEY_" + i));
+        }
+
+        assertEquals(10, overflow.hitCount());
+        assertEquals(0, overflow.missCount());
+    }
+
+    @Test
+    public void testTinyLfuEvictedValuesOverflow() throws Exception {
+        SoftMemoryCache overflow = new SoftMemoryCache();
+        TieredMemoryCache cache = new TieredMemoryCache(EvictionPolicy.TINY_LFU, 10, null, overflow);
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, cache.get("KEY_" + i));
+        }
+
+        assertEquals(10, overflow.hitCount());
+    }
+
+    @Test
+    public void testPutReplacesOverflowValue() throws Exception {
+        SoftMemoryCache overflow = new SoftMemoryCache();
+        TieredMemoryCache cache = new TieredMemoryCache(EvictionPolicy.LRU, 1, null, overflow);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        cache.put("TEST_KEY_2", "TEST_VALUE_2");
+
+        cache.put("TEST_KEY", "TEST_VALUE_3");
+
+        assertEquals("TEST_VALUE_3", cache.get("TEST_KEY"));
+        assertEquals("TEST_VALUE_2", cache.get("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testTooHeavyValueOverflows() throws Exception {
+        SoftMemoryCache overflow = new SoftMemoryCache();
+        TieredMemoryCache cache = new TieredMemoryCache(EvictionPolicy.LRU, 10, (key, value) -> 11, overflow);
+
+        assertTrue(cache.put("TEST_KEY", "TEST_VALUE"));
+
+        assertEquals("TEST_VALUE", overflow.get("TEST_KEY"));
+        assertEquals("TEST_VALUE", cache.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        SoftMemoryCache overflow = new SoftMemoryCache();
+        TieredMemoryCache cache = new TieredMemoryCache(EvictionPolicy.LRU, 1, null, overflow);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        cache.put("TEST_KEY_2", "TEST_VALUE_2");
+
+        cache.remove("TEST_KEY");
+        cache.remove("TEST_KEY_2");
+
+        assertNull(cache.get("TEST_KEY"));
+        assertNull(cache.get("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        SoftMemoryCache overflow = new SoftMemoryCache();
+        TieredMemoryCache cache = new TieredMemoryCache(EvictionPolicy.LRU, 1, null, overflow);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        cache.put("TEST_KEY_2", "TEST_VALUE_2");
+
+        cache.clear();
+
+        assertNull(cache.get("TEST_KEY"));
+        assertNull(cache.get("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        SoftMemoryCache overflow = new SoftMemoryCache();
+        TieredMemoryCache cache = new TieredMemoryCache(EvictionPolicy.LRU, 1, null, overflow);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        cache.put("TEST_KEY_2", "TEST_VALUE_2");
+
+        cache.trim(0);
+
+        assertNull(cache.get("TEST_KEY"));
+        assertNull(cache.get("TEST_KEY_2"));
+    }
+}
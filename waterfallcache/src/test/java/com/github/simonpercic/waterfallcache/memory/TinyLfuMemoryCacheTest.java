@@ -0,0 +1,304 @@
+package com.github.simonpercic.waterfallcache.memory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TinyLfuMemoryCache tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class TinyLfuMemoryCacheTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(10);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        assertEquals("TEST_VALUE", cache.get("TEST_KEY"));
+
+        cache.put("TEST_KEY", "TEST_VALUE_2");
+        assertEquals("TEST_VALUE_2", cache.get("TEST_KEY"));
+
+        cache.remove("TEST_KEY");
+        assertNull(cache.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testBoundedBySize() throws Exception {
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(10);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        int size = 0;
+
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("KEY_" + i) != null) {
+                size++;
+            }
+        }
+
+        assertEquals(10, size);
+    }
+
+    @Test
+    public void testBoundedByWeight() throws Exception {
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(100, (key, value) -> (Integer) value);
+
+        cache.put("TOO_HEAVY", 101);
+        assertNull(cache.get("TOO_HEAVY"));
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("KEY_" + i, 10);
+        }
+
+        int weight = 0;
+
+        for (int i = 0; i < 20; i++) {
+            Object value = cache.get("KEY_" + i);
+
+            if (value != null) {
+                weight += (Integer) value;
+            }
+        }
+
+        assertTrue(weight <= 100);
+    }
+
+    @Test
+    public void testFrequentValueSurvivesScan() throws Exception {
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(100);
+
+        cache.put("HOT_KEY", "HOT_VALUE");
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get("HOT_KEY"));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            String key = "SCAN_" + i;
+
+            if (cache.get(key) == null) {
+                cache.put(key, i);
+            }
+        }
+
+        assertEquals("HOT_VALUE", cache.get("HOT_KEY"));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(10);
+
+        cache.put("TEST_KEY", "TEST_VALUE");
+        cache.clear();
+
+        assertNull(cache.get("TEST_KEY"));
+    }
+
+    /**
+     * Replays a trace of Zipf distributed reads over 10,000 keys, interrupted by scans of 1,000 keys that are read
+     * once, through both policies. Reads that miss put the value, as the WaterfallCache does.
+     * At the time of writing, hit ratios at 100 / 500 / 2000 values are: LRU 0.215 / 0.366 / 0.503, W-TinyLFU
+     * 0.320 / 0.461 / 0.605.
+     */
+    @Test
+    public void testHitRatioTraceComparedToLru() throws Exception {
+        List<String> trace = zipfTraceWithScans();
+
+        for (int capacity : new int[]{100, 500, 2000}) {
+            Map<String, Object> lru = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > capacity;
+                }
+            };
+
+            TinyLfuMemoryCache tinyLfu = new TinyLfuMemoryCache(capacity);
+
+            int lruHits = 0;
+            int tinyLfuHits = 0;
+
+            for (int i = 0; i < trace.size(); i++) {
+                String key = trace.get(i);
+
+                if (lru.get(key) != null) {
+                    lruHits++;
+                } else {
+                    lru.put(key, key);
+                }
+
+                if (tinyLfu.get(key) != null) {
+                    tinyLfuHits++;
+                } else {
+                    tinyLfu.put(key, key);
+                }
+            }
+
+            double lruHitRatio = (double) lruHits / trace.size();
+            double tinyLfuHitRatio = (double) tinyLfuHits / trace.size();
+
+            assertTrue(String.format("capacity %d: LRU %.3f, W-TinyLFU %.3f", capacity, lruHitRatio, tinyLfuHitRatio),
+                    tinyLfuHitRatio > lruHitRatio + 0.05);
+        }
+    }
+
+    private static List<String> zipfTraceWithScans() {
+        Random random = new Random(42);
+
+        int keyCount = 10000;
+        double[] cdf = new double[keyCount];
+        double sum = 0;
+
+        for (int i = 0; i < keyCount; i++) {
+            sum += 1 / Math.pow(i + 1, 0.9);
+            cdf[i] = sum;
+        }
+
+        for (int i = 0; i < keyCount; i++) {
+            cdf[i] /= sum;
+        }
+
+        List<String> trace = new ArrayList<>();
+        int scanned = 0;
+
+        for (int i = 0; i < 200000; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            trace.add("KEY_" + (index < 0 ? -index - 1 : index));
+
+            if (i % 5000 == 4999) {
+                for (int j = 0; j < 1000; j++) {
+                    trace.add("SCAN_" + scanned++);
+                }
+            }
+        }
+
+        return trace;
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(100);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("KEY_" + i, i);
+        }
+
+        cache.trim(0.5);
+
+        int count = 0;
+
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("KEY_" + i) != null) {
+                count++;
+            }
+        }
+
+        assertEquals(50, count);
+
+        cache.trim(0);
+        assertNull(cache.get("KEY_99"));
+    }
+
+    @Test
+    public void testGetDoesNotWaitForWriter() throws Exception {
+        CountDownLatch evicting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(1, null, (key, value) -> {
+            evicting.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        cache.put("KEY_A", "VALUE_A");
+
+        // holds the lock while the eviction listener waits
+        Thread writer = new Thread(() -> cache.put("KEY_B", "VALUE_B"));
+        writer.start();
+
+        assertTrue(evicting.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger reads = new AtomicInteger();
+
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                cache.get("KEY_A");
+                reads.incrementAndGet();
+            }
+        });
+
+        reader.start();
+        reader.join(5000);
+
+        assertEquals(1000, reads.get());
+
+        release.countDown();
+        writer.join();
+
+        assertEquals("VALUE_B", cache.get("KEY_B"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        TinyLfuMemoryCache cache = new TinyLfuMemoryCache(100);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100000; i++) {
+                        String key = "KEY_" + random.nextInt(500);
+                        int operation = random.nextInt(10);
+
+                        if (operation == 0) {
+                            cache.remove(key);
+                        } else if (operation < 4) {
+                            cache.put(key, key);
+                        } else {
+                            Object value = cache.get(key);
+                            assertTrue(value == null || value.equals(key));
+                        }
+                    }
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(cache.keys().size() <= 100);
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.simonpercic.waterfallcache.offheap;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HashIndex tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class HashIndexTest {
+
+    @Test
+    public void testHashNeverEmpty() throws Exception {
+        assertTrue(HashIndex.hash(new byte[0]) != 0);
+        assertTrue(HashIndex.hash("TEST_KEY".getBytes("UTF-8")) != HashIndex.hash("TEST_KEY_2".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testSharedHash() throws Exception {
+        HashIndex index = new HashIndex();
+
+        index.insert(42, 1);
+        index.insert(42, 2);
+        index.insert(42, 3);
+
+        index.remove(slot(index, 42, 2));
+
+        assertEquals(2, index.size());
+        assertTrue(slot(index, 42, 1) >= 0);
+        assertEquals(-1, slot(index, 42, 2));
+        assertTrue(slot(index, 42, 3) >= 0);
+    }
+
+    @Test
+    public void testRandomOperations() throws Exception {
+        HashIndex index = new HashIndex();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(0);
+
+        for (int i = 0; i < 100000; i++) {
+            // few distinct hashes with clustered low bits, so that probe sequences overlap and wrap around
+            long hash = (random.nextInt(2000) << 4) + 1;
+
+            if (expected.containsKey(hash)) {
+                index.remove(slot(index, hash, expected.remove(hash)));
+            } else {
+                index.insert(hash, i);
+                expected.put(hash, (long) i);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertTrue(slot(index, entry.getKey(), entry.getValue()) >= 0);
+        }
+    }
+
+    private static int slot(HashIndex index, long hash, long address) {
+        for (int slot = index.first(hash); !index.isEmpty(slot); slot = index.next(slot)) {
+            if (index.hashAt(slot) == hash && index.addressAt(slot) == address) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.simonpercic.waterfallcache.offheap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * OffHeapStore tests
+ *
+ * @author Simon Percic <a href="https://github.com/simonpercic">https://github.com/simonpercic</a>
+ */
+public class OffHeapStoreTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        OffHeapStore store = new OffHeapStore(1024, 1024);
+
+        byte[] bytes = bytes(100, 1);
+
+        assertTrue(store.put("TEST_KEY", bytes));
+        assertArrayEquals(bytes, store.get("TEST_KEY"));
+        assertTrue(store.contains("TEST_KEY"));
+
+        store.remove("TEST_KEY");
+        assertNull(store.get("TEST_KEY"));
+        assertFalse(store.contains("TEST_KEY"));
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        OffHeapStore store = new OffHeapStore(4096, 1024);
+
+        store.put("TEST_KEY", bytes(100, 1));
+        store.put("TEST_KEY", bytes(500, 2));
+
+        assertArrayEquals(bytes(500, 2), store.get("TEST_KEY"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testTooLarge() throws Exception {
+        OffHeapStore store = new OffHeapStore(4096, 1024);
+
+        // chunks hold a 16 byte header and the key next to the value
+        assertTrue(store.put("TEST_KEY", bytes(1024 - 16 - 8, 1)));
+        assertFalse(store.put("TEST_KEY_2", bytes(1024 - 16 - 10 + 1, 1)));
+        assertNull(store.get("TEST_KEY_2"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedOfSizeClass() throws Exception {
+        // a single slab, holding 9 chunks of 104 bytes
+        OffHeapStore store = new OffHeapStore(1024, 1024);
+
+        for (int i = 0; i < 9; i++) {
+            assertTrue(store.put("KEY_" + i, bytes(80, i)));
+        }
+
+        store.get("KEY_0");
+        assertTrue(store.put("KEY_9", bytes(80, 9)));
+
+        assertArrayEquals(bytes(80, 0), store.get("KEY_0"));
+        assertNull(store.get("KEY_1"));
+        assertArrayEquals(bytes(80, 9), store.get("KEY_9"));
+        assertEquals(9, store.size());
+    }
+
+    @Test
+    public void testSizeClassTakesOverSlab() throws Exception {
+        OffHeapStore store = new OffHeapStore(1024, 1024);
+
+        assertTrue(store.put("TEST_KEY", bytes(100, 1)));
+
+        // the only slab is assigned to the smaller size class, it is reassigned with its values evicted
+        assertTrue(store.put("TEST_KEY_2", bytes(500, 2)));
+        assertArrayEquals(bytes(500, 2), store.get("TEST_KEY_2"));
+        assertNull(store.get("TEST_KEY"));
+    }
+
+    @Test
+    public void testAllSlabsAssigned() throws Exception {
+        OffHeapStore store = new OffHeapStore(4 * 1024 * 1024, 1024 * 1024);
+
+        // a slab per size class, all memory is allocated
+        assertTrue(store.put("KEY_0", bytes(50, 0)));
+        assertTrue(store.put("KEY_1", bytes(200, 1)));
+        assertTrue(store.put("KEY_2", bytes(400, 2)));
+        assertTrue(store.put("KEY_3", bytes(900, 3)));
+
+        assertTrue(store.put("LARGE_KEY", bytes(100 * 1024, 4)));
+        assertArrayEquals(bytes(100 * 1024, 4), store.get("LARGE_KEY"));
+        assertEquals(4, store.size());
+    }
+
+    @Test
+    public void testValueSizeMixChanges() throws Exception {
+        // four slabs, holding 9 small or a single large chunk each
+        OffHeapStore store = new OffHeapStore(4096, 1024);
+
+        for (int i = 0; i < 36; i++) {
+            assertTrue(store.put("S_" + i, bytes(80, i)));
+        }
+
+        assertEquals(36, store.size());
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(store.put("L_" + i, bytes(900, i)));
+        }
+
+        // all slabs moved to the large size class
+        assertEquals(4, store.size());
+
+        for (int i = 0; i < 36; i++) {
+            assertNull(store.get("S_" + i));
+        }
+
+        for (int i = 4; i < 8; i++) {
+            assertArrayEquals(bytes(900, i), store.get("L_" + i));
+        }
+
+        // and back
+        for (int i = 0; i < 36; i++) {
+            assertTrue(store.put("S_" + i, bytes(80, i)));
+        }
+
+        assertArrayEquals(bytes(80, 35), store.get("S_35"));
+        assertTrue(store.size() > 4);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        OffHeapStore store = new OffHeapStore(1024, 1024);
+
+        for (int i = 0; i < 9; i++) {
+            store.put("KEY_" + i, bytes(80, i));
+        }
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertNull(store.get("KEY_0"));
+
+        for (int i = 0; i < 9; i++) {
+            assertTrue(store.put("KEY_" + i, bytes(80, i)));
+        }
+
+        assertEquals(9, store.size());
+    }
+
+    @Test
+    public void testManyKeys() throws Exception {
+        OffHeapStore store = new OffHeapStore(16 * 1024 * 1024, 1024);
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(store.put("KEY_" + i, bytes(i % 200, i)));
+        }
+
+        for (int i = 0; i < 10000; i += 2) {
+            store.remove("KEY_" + i);
+        }
+
+        assertEquals(5000, store.size());
+
+        for (int i = 0; i < 10000; i++) {
+            if (i % 2 == 0) {
+                assertNull(store.get("KEY_" + i));
+            } else {
+                assertArrayEquals(bytes(i % 200, i), store.get("KEY_" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        OffHeapStore store = new OffHeapStore(4096, 1024);
+
+        store.put("KEY_1", bytes(50, 1));
+        store.put("KEY_2", bytes(500, 2));
+        store.put("KEY_3", bytes(50, 3));
+        store.remove("KEY_3");
+
+        assertEquals(new HashSet<>(Arrays.asList("KEY_1", "KEY_2")), new HashSet<>(store.keys()));
+    }
+
+    @Test
+    public void testTrim() throws Exception {
+        OffHeapStore store = new OffHeapStore(4096, 1024);
+
+        // one slab per size class
+        store.put("KEY_0", bytes(50, 0));
+        store.put("KEY_1", bytes(200, 1));
+        store.put("KEY_2", bytes(400, 2));
+        store.put("KEY_3", bytes(900, 3));
+
+        store.trim(0.5);
+
+        assertEquals(2, store.size());
+        assertArrayEquals(bytes(50, 0), store.get("KEY_0"));
+        assertArrayEquals(bytes(200, 1), store.get("KEY_1"));
+        assertNull(store.get("KEY_2"));
+        assertNull(store.get("KEY_3"));
+
+        // released slabs can be allocated again
+        assertTrue(store.put("KEY_3", bytes(900, 3)));
+
+        store.trim(0);
+        assertEquals(0, store.size());
+        assertNull(store.get("KEY_0"));
+        assertTrue(store.put("KEY_0", bytes(50, 0)));
+    }
+
+    private static byte[] bytes(int length, int value) {
+        byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (value + i);
+        }
+
+        return bytes;
+    }
+}